@@ -0,0 +1,117 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of enciphering one message under many keys, in messages
+ *  per second: by a BatchMachine, with and without the Vector API, and
+ *  by a Machine per key.  The Vector API is used only when the JVM has
+ *  the jdk.incubator.vector module, as the Makefile's 'bench' target
+ *  arranges.
+ *  @author Dhruv Sirohi
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(BatchBenchmark.KEYS)
+public class BatchBenchmark {
+
+    /** Number of keys (and so of messages per operation). */
+    static final int KEYS = 64;
+
+    /** Machines for each key, and the message. */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        /** Number of characters in the message. */
+        @Param({ "16", "1024" })
+        public int messageLength;
+
+        /** Build the machines and choose the message. */
+        @Setup
+        public void setUp() {
+            Random random = new Random(SEED);
+            Alphabet alpha = BenchmarkUtils.alphabet(SIZE);
+            machines = new Machine[KEYS];
+            for (int k = 0; k < KEYS; k += 1) {
+                machines[k] = BenchmarkUtils.machine(SIZE, SEED);
+                StringBuilder setting = new StringBuilder();
+                for (int i = 0; i < machines[k].numRotors() - 1; i += 1) {
+                    setting.append(alpha.toChar(random.nextInt(SIZE)));
+                }
+                machines[k].setRotors(setting.toString());
+            }
+            scalar = new BatchMachine(machines, false);
+            vector = new BatchMachine(machines, true);
+            String text = BenchmarkUtils.message(alpha, messageLength,
+                                                 random);
+            message = text;
+            int[] indices = alpha.toInts(text);
+            messages = new int[KEYS][];
+            results = new int[KEYS][messageLength];
+            for (int k = 0; k < KEYS; k += 1) {
+                messages[k] = indices;
+            }
+        }
+
+        /** A machine for each key. */
+        Machine[] machines;
+
+        /** Batches of MACHINES, without and (if possible) with the
+         *  Vector API. */
+        BatchMachine scalar, vector;
+
+        /** The message. */
+        String message;
+
+        /** MESSAGE as indices, once per key, and room for the results. */
+        int[][] messages, results;
+    }
+
+    /** Measure BatchMachine without the Vector API. */
+    @Benchmark
+    public int[][] batchScalar(Keys keys) {
+        keys.scalar.convert(keys.messages, 0, keys.messageLength,
+                            keys.results);
+        return keys.results;
+    }
+
+    /** Measure BatchMachine with the Vector API, if available. */
+    @Benchmark
+    public int[][] batchVector(Keys keys) {
+        keys.vector.convert(keys.messages, 0, keys.messageLength,
+                            keys.results);
+        return keys.results;
+    }
+
+    /** Measure Machine.convert on each key's machine. */
+    @Benchmark
+    public String machines(Keys keys) {
+        String result = null;
+        for (Machine m : keys.machines) {
+            result = m.convert(keys.message);
+        }
+        return result;
+    }
+
+    /** Size of the alphabet. */
+    private static final int SIZE = 26;
+
+    /** Seed for the random rotors, settings and message. */
+    private static final long SEED = 61;
+}
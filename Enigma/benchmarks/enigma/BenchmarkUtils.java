@@ -0,0 +1,116 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Utility definitions for building the machines, alphabets and messages
+ *  measured by the benchmarks.
+ *  @author Dhruv Sirohi
+ */
+class BenchmarkUtils {
+
+    /** First character of the alphabets larger than UPPER_STRING. */
+    private static final char LARGE_ALPHABET_START = '\u0100';
+
+    /** The default upper-case alphabet. */
+    static final String UPPER_STRING = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Return an alphabet of SIZE characters: the upper-case letters if
+     *  SIZE is 26, and otherwise a run of letters from the Latin
+     *  Extended blocks, none of which is special in cycle notation. */
+    static Alphabet alphabet(int size) {
+        if (size == UPPER_STRING.length()) {
+            return new Alphabet(UPPER_STRING);
+        }
+        StringBuilder chars = new StringBuilder();
+        for (int i = 0; i < size; i += 1) {
+            chars.append((char) (LARGE_ALPHABET_START + i));
+        }
+        return new Alphabet(chars.toString());
+    }
+
+    /** Return the indices of ALPHA in an order shuffled by RANDOM. */
+    private static List<Integer> shuffled(Alphabet alpha, Random random) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < alpha.size(); i += 1) {
+            result.add(i);
+        }
+        Collections.shuffle(result, random);
+        return result;
+    }
+
+    /** Return, in cycle notation, a permutation of ALPHA chosen by
+     *  RANDOM. */
+    static String randomCycles(Alphabet alpha, Random random) {
+        List<Integer> image = shuffled(alpha, random);
+        boolean[] seen = new boolean[alpha.size()];
+        StringBuilder cycles = new StringBuilder();
+        for (int start = 0; start < alpha.size(); start += 1) {
+            if (!seen[start]) {
+                cycles.append('(');
+                for (int i = start; !seen[i]; i = image.get(i)) {
+                    seen[i] = true;
+                    cycles.append(alpha.toChar(i));
+                }
+                cycles.append(") ");
+            }
+        }
+        return cycles.toString();
+    }
+
+    /** Return, in cycle notation, a derangement of ALPHA (whose size
+     *  must be even) that pairs up characters chosen by RANDOM. */
+    static String randomPairs(Alphabet alpha, Random random) {
+        List<Integer> order = shuffled(alpha, random);
+        StringBuilder cycles = new StringBuilder();
+        for (int i = 0; i + 1 < order.size(); i += 2) {
+            cycles.append('(').append(alpha.toChar(order.get(i)))
+                .append(alpha.toChar(order.get(i + 1))).append(") ");
+        }
+        return cycles.toString();
+    }
+
+    /** Return a 5-rotor, 3-pawl machine over an alphabet of SIZE
+     *  characters, with rotors chosen by a Random seeded with SEED,
+     *  inserted, set to their 0 positions and given a plugboard of a
+     *  few pairs. */
+    static Machine machine(int size, long seed) {
+        Random random = new Random(seed);
+        Alphabet alpha = alphabet(size);
+        List<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B",
+                new Permutation(randomPairs(alpha, random), alpha)));
+        rotors.add(new FixedRotor("Beta",
+                new Permutation(randomCycles(alpha, random), alpha)));
+        String[] names = { "I", "II", "III" };
+        for (String name : names) {
+            rotors.add(new MovingRotor(name,
+                    new Permutation(randomCycles(alpha, random), alpha),
+                    String.valueOf(alpha.toChar(random.nextInt(size)))));
+        }
+        Machine result = new Machine(alpha, 5, 3, rotors);
+        result.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        StringBuilder setting = new StringBuilder();
+        for (int i = 0; i < 4; i += 1) {
+            setting.append(alpha.toChar(0));
+        }
+        result.setRotors(setting.toString());
+        result.setPlugboard(new Permutation(
+                "(" + alpha.toChar(0) + alpha.toChar(1) + ") ("
+                + alpha.toChar(2) + alpha.toChar(3) + ")", alpha));
+        return result;
+    }
+
+    /** Return a message of LENGTH characters of ALPHA chosen by
+     *  RANDOM. */
+    static String message(Alphabet alpha, int length, Random random) {
+        char[] result = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = alpha.toChar(random.nextInt(alpha.size()));
+        }
+        return new String(result);
+    }
+
+}
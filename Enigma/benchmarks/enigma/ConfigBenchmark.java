@@ -0,0 +1,76 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Main.readConfig on generated configuration files with
+ *  different numbers of rotors.  The alphabet is always the upper-case
+ *  letters, since Main reads its configuration in the platform's default
+ *  encoding.
+ *  @author Dhruv Sirohi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+
+    /** Number of rotors in the configuration, besides its reflector. */
+    @Param({ "12", "500" })
+    public int rotors;
+
+    /** Write the configuration file. */
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(SEED);
+        Alphabet alpha = new Alphabet(BenchmarkUtils.UPPER_STRING);
+        _config = File.createTempFile("enigma", ".conf");
+        try (PrintWriter out = new PrintWriter(_config)) {
+            out.println(alpha.returnAlpha());
+            out.println(" 5 3");
+            for (int i = 0; i < rotors; i += 1) {
+                String kind = i % 3 == 0
+                    ? "N" : "M" + alpha.toChar(random.nextInt(alpha.size()));
+                out.printf(" R%d %s %s%n", i, kind,
+                           BenchmarkUtils.randomCycles(alpha, random));
+            }
+            out.printf(" B R %s%n", BenchmarkUtils.randomPairs(alpha, random));
+        }
+    }
+
+    /** Remove the configuration file. */
+    @TearDown
+    public void tearDown() {
+        _config.delete();
+    }
+
+    /** Measure reading the configuration into a Machine. */
+    @Benchmark
+    public Machine readConfig() {
+        return new Main(new String[] { _config.getPath() }).readConfig();
+    }
+
+    /** Seed for the random rotors. */
+    private static final long SEED = 61;
+
+    /** The configuration file. */
+    private File _config;
+}
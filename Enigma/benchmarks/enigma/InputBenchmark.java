@@ -0,0 +1,89 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Main.process reading a large generated input (see
+ *  Workload) line by line, telling setting lines from message lines,
+ *  and converting and writing each message line, with lines of
+ *  different lengths, so that the cost per line of the tokenizer shows
+ *  against the cost per character of conversion.  The time of an
+ *  operation divided into the size of the input printed by setUp gives
+ *  the throughput in bytes per second.
+ *  @author Dhruv Sirohi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputBenchmark {
+
+    /** Mebibytes of message characters in the input. */
+    @Param({ "100" })
+    public int megabytes;
+
+    /** Message characters on each line of the input. */
+    @Param({ "5", "60", "1000" })
+    public int lineLength;
+
+    /** Write the configuration and input files into a new temporary
+     *  directory. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("enigma").toFile();
+        Workload workload = new Workload("input")
+            .set("chars", (long) megabytes * MEGA)
+            .set("line", lineLength).set("settings", SETTINGS);
+        workload.write(_dir);
+        _args = new String[] {
+            workload.config(_dir).getPath(), workload.input(_dir).getPath(),
+            new File(_dir, "input.out").getPath(),
+        };
+        System.out.printf("%nInput of %d bytes%n",
+                          workload.input(_dir).length());
+    }
+
+    /** Remove the temporary directory. */
+    @TearDown
+    public void tearDown() {
+        for (File file : _dir.listFiles()) {
+            file.delete();
+        }
+        _dir.delete();
+    }
+
+    /** Measure Main converting the whole input. */
+    @Benchmark
+    public void process() throws IOException {
+        new Main(_args).process();
+    }
+
+    /** A mebibyte. */
+    private static final long MEGA = 1 << 20;
+
+    /** Setting lines in the input. */
+    private static final int SETTINGS = 1000;
+
+    /** Directory holding the configuration, input and output. */
+    private File _dir;
+
+    /** Arguments to Main. */
+    private String[] _args;
+}
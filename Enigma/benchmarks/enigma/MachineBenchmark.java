@@ -0,0 +1,97 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Machine conversions, single characters and whole
+ *  messages, over several alphabet sizes and message lengths.
+ *  @author Dhruv Sirohi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** A configured machine. */
+    @State(Scope.Thread)
+    public static class Configured {
+
+        /** Number of characters in the alphabet. */
+        @Param({ "26", "256" })
+        public int alphabetSize;
+
+        /** Whether the machine runs in compiled mode (limited to 64 MB,
+         *  which holds all tables for a 26-character alphabet but not
+         *  for 256). */
+        @Param({ "false", "true" })
+        public boolean compiled;
+
+        /** Build the machine. */
+        @Setup
+        public void setUp() {
+            machine = BenchmarkUtils.machine(alphabetSize, SEED);
+            if (compiled) {
+                machine.setCompiledLimit(COMPILED_LIMIT);
+            }
+        }
+
+        /** The machine measured. */
+        Machine machine;
+
+        /** Result of the last single-character conversion. */
+        int index;
+    }
+
+    /** A message to convert. */
+    @State(Scope.Thread)
+    public static class Message {
+
+        /** Number of characters in the message. */
+        @Param({ "16", "1024", "65536" })
+        public int messageLength;
+
+        /** Choose the message, from the alphabet of CONFIGURED. */
+        @Setup
+        public void setUp(Configured configured) {
+            text = BenchmarkUtils.message(
+                    BenchmarkUtils.alphabet(configured.alphabetSize),
+                    messageLength, new Random(SEED));
+        }
+
+        /** The message. */
+        String text;
+    }
+
+    /** Measure Machine.convert(int), including the rotor step. */
+    @Benchmark
+    public int convertInt(Configured configured) {
+        configured.index = configured.machine.convert(configured.index);
+        return configured.index;
+    }
+
+    /** Measure Machine.convert(String). */
+    @Benchmark
+    public String convertString(Configured configured, Message message) {
+        return configured.machine.convert(message.text);
+    }
+
+    /** Seed for the random rotors and messages. */
+    private static final long SEED = 61;
+
+    /** Compiled-mode table limit, in bytes. */
+    private static final long COMPILED_LIMIT = 64L << 20;
+}
@@ -0,0 +1,106 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of writing converted messages in groups of five to a
+ *  PrintStream (over a stream that discards its bytes, as System.out
+ *  or a file would hold them), by GroupWriter and by the former
+ *  routine, which appended one char at a time to the PrintStream.
+ *  @author Dhruv Sirohi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputBenchmark {
+
+    /** A message and the streams it is written to. */
+    @State(Scope.Thread)
+    public static class Output {
+
+        /** Number of characters in the message. */
+        @Param({ "16", "1024", "65536" })
+        public int messageLength;
+
+        /** Choose the message and open the streams. */
+        @Setup
+        public void setUp() {
+            message = BenchmarkUtils.message(
+                    BenchmarkUtils.alphabet(BenchmarkUtils.UPPER_STRING
+                                            .length()),
+                    messageLength, new Random(SEED)).toCharArray();
+            OutputStream sink = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    bytes += 1;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    bytes += len;
+                }
+            };
+            stream = new PrintStream(sink);
+            writer = new GroupWriter(new OutputStreamWriter(stream));
+        }
+
+        /** The message. */
+        char[] message;
+
+        /** The PrintStream written to. */
+        PrintStream stream;
+
+        /** A GroupWriter writing to STREAM. */
+        GroupWriter writer;
+
+        /** Number of bytes written to STREAM. */
+        long bytes;
+    }
+
+    /** Measure GroupWriter.writeLine, flushing after each line as Main
+     *  does only at the end of its input (so this is its worst case). */
+    @Benchmark
+    public long groupWriter(Output output) throws IOException {
+        output.writer.writeLine(output.message, 0, output.message.length);
+        output.writer.flush();
+        return output.bytes;
+    }
+
+    /** Measure the former routine, a char at a time. */
+    @Benchmark
+    public long perChar(Output output) {
+        char[] msg = output.message;
+        PrintStream out = output.stream;
+        int length = msg.length, groups = length / 5, point = 0;
+        for (int i = 0; i <= groups; i++) {
+            for (int j = 0; j < 5 && point < length; j++) {
+                out.append(msg[point]);
+                point++;
+            }
+            out.append(' ');
+        }
+        out.append('\n');
+        return output.bytes;
+    }
+
+    /** Seed for the random messages. */
+    private static final long SEED = 61;
+}
@@ -0,0 +1,84 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of single lookups in a Permutation and through a Rotor.
+ *  Each benchmark feeds its previous result back in, so that the JIT
+ *  cannot hoist the lookup out of the measurement loop.
+ *  @author Dhruv Sirohi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26", "64", "256" })
+    public int alphabetSize;
+
+    /** Build the permutation and rotor measured. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = BenchmarkUtils.alphabet(alphabetSize);
+        _perm = new Permutation(
+                BenchmarkUtils.randomCycles(alpha, new Random(SEED)), alpha);
+        _rotor = new MovingRotor("I", _perm, "");
+        _rotor.set(alphabetSize / 2);
+    }
+
+    /** Measure Permutation.permute(int). */
+    @Benchmark
+    public int permute() {
+        _index = _perm.permute(_index);
+        return _index;
+    }
+
+    /** Measure Permutation.invert(int). */
+    @Benchmark
+    public int invert() {
+        _index = _perm.invert(_index);
+        return _index;
+    }
+
+    /** Measure Rotor.convertForward. */
+    @Benchmark
+    public int convertForward() {
+        _index = _rotor.convertForward(_index);
+        return _index;
+    }
+
+    /** Measure Rotor.convertBackward. */
+    @Benchmark
+    public int convertBackward() {
+        _index = _rotor.convertBackward(_index);
+        return _index;
+    }
+
+    /** Seed for the random permutation. */
+    private static final long SEED = 61;
+
+    /** Permutation measured. */
+    private Permutation _perm;
+
+    /** Rotor with _perm as its permutation, set half way round. */
+    private Rotor _rotor;
+
+    /** Result of the last lookup. */
+    private int _index;
+}
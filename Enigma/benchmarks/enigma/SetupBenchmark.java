@@ -0,0 +1,146 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of applying the rotor part of a setting line, alternating
+ *  between two orders of rotors, against the former checks, which
+ *  looked up each name, tested its class, and compared the names of
+ *  every pair of rotors for repeats.
+ *  @author Dhruv Sirohi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SetupBenchmark {
+
+    /** A machine with many available rotors, and two orders of them. */
+    @State(Scope.Thread)
+    public static class Rotors {
+
+        /** Number of rotor slots. */
+        @Param({ "5", "20" })
+        public int slots;
+
+        /** Build the machine and orders. */
+        @Setup
+        public void setUp() {
+            Random random = new Random(SEED);
+            Alphabet alpha = BenchmarkUtils.alphabet(SIZE);
+            List<Rotor> all = new ArrayList<>();
+            all.add(new Reflector("B", new Permutation(
+                    BenchmarkUtils.randomPairs(alpha, random), alpha)));
+            for (int i = 0; i < AVAILABLE; i += 1) {
+                Permutation perm = new Permutation(
+                        BenchmarkUtils.randomCycles(alpha, random), alpha);
+                all.add(i % 2 == 0 ? new FixedRotor("F" + i, perm)
+                        : new MovingRotor("M" + i, perm, "A"));
+            }
+            pawls = slots / 2;
+            machine = new Machine(alpha, slots, pawls, all);
+            orders = new String[2][slots];
+            for (String[] order : orders) {
+                order[0] = "B";
+                List<Integer> fixed = new ArrayList<>();
+                for (int i = 0; i < AVAILABLE; i += 2) {
+                    fixed.add(i);
+                }
+                Collections.shuffle(fixed, random);
+                for (int i = 1; i < slots; i += 1) {
+                    int k = fixed.get(i);
+                    order[i] = i < slots - pawls ? "F" + k : "M" + (k + 1);
+                }
+            }
+            byName = new HashMap<>();
+            for (Rotor rotor : all) {
+                byName.put(rotor.name(), rotor);
+            }
+        }
+
+        /** The machine measured. */
+        Machine machine;
+
+        /** Its number of pawls. */
+        int pawls;
+
+        /** Two orders of rotor names, reflector first. */
+        String[][] orders;
+
+        /** The available rotors, by name, for the former checks. */
+        Map<String, Rotor> byName;
+
+        /** The order to use next. */
+        int next;
+    }
+
+    /** Measure Machine.insertRotors. */
+    @Benchmark
+    public Machine insertRotors(Rotors rotors) {
+        rotors.next ^= 1;
+        rotors.machine.insertRotors(rotors.orders[rotors.next]);
+        return rotors.machine;
+    }
+
+    /** Measure the former checks of a setting line's rotors alone. */
+    @Benchmark
+    public Rotor[] formerChecks(Rotors rotors) {
+        rotors.next ^= 1;
+        String[] names = rotors.orders[rotors.next];
+        Rotor[] used = new Rotor[names.length];
+        if (!rotors.byName.containsKey(names[0])) {
+            throw new EnigmaException("Reflector not in config.");
+        }
+        used[0] = rotors.byName.get(names[0]);
+        if (!(used[0] instanceof Reflector)
+                || !used[0].permutation().derangement()) {
+            throw new EnigmaException("Bad reflector.");
+        }
+        for (int i = 1; i < names.length; i += 1) {
+            if (!rotors.byName.containsKey(names[i])) {
+                throw new EnigmaException("Rotor not in configuration");
+            }
+            used[i] = rotors.byName.get(names[i]);
+            if (i >= names.length - rotors.pawls
+                    ? !(used[i] instanceof MovingRotor)
+                    : !(used[i] instanceof FixedRotor)) {
+                throw new EnigmaException("Wrong kind of rotor.");
+            }
+        }
+        for (int i = 0; i < used.length; i += 1) {
+            for (int j = i + 1; j < used.length; j += 1) {
+                if (used[i].name().compareTo(used[j].name()) == 0) {
+                    throw new EnigmaException("Rotors repeated.");
+                }
+            }
+        }
+        return used;
+    }
+
+    /** Size of the alphabet. */
+    private static final int SIZE = 26;
+
+    /** Number of available rotors besides the reflector. */
+    private static final int AVAILABLE = 64;
+
+    /** Seed for the random rotors and orders. */
+    private static final long SEED = 61;
+}
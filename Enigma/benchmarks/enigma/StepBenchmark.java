@@ -0,0 +1,123 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the rotor step alone, on 10-rotor machines whose pawl
+ *  rotors have many notches, against the former stepping routine, which
+ *  searched each rotor's string of notches for the letter at its window
+ *  and stopped at the first notch found.
+ *  @author Dhruv Sirohi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepBenchmark {
+
+    /** A 10-rotor machine, and copies of its pawl rotors for the former
+     *  routine. */
+    @State(Scope.Thread)
+    public static class Stepped {
+
+        /** Number of pawls. */
+        @Param({ "3", "9" })
+        public int pawls;
+
+        /** Number of notches on each pawl rotor. */
+        @Param({ "1", "13" })
+        public int notches;
+
+        /** Build the machine and rotors. */
+        @Setup
+        public void setUp() {
+            Random random = new Random(SEED);
+            Alphabet alpha = BenchmarkUtils.alphabet(SIZE);
+            List<Rotor> all = new ArrayList<>();
+            String[] names = new String[ROTORS];
+            names[0] = "B";
+            all.add(new Reflector("B", new Permutation(
+                    BenchmarkUtils.randomPairs(alpha, random), alpha)));
+            rotors = new Rotor[pawls];
+            notchLetters = new String[pawls];
+            for (int i = 1; i < ROTORS; i += 1) {
+                names[i] = "R" + i;
+                Permutation perm = new Permutation(
+                        BenchmarkUtils.randomCycles(alpha, random), alpha);
+                if (i < ROTORS - pawls) {
+                    all.add(new FixedRotor(names[i], perm));
+                    continue;
+                }
+                StringBuilder letters = new StringBuilder();
+                for (int k = 0; k < notches; k += 1) {
+                    letters.append(alpha.toChar((k * SIZE) / notches));
+                }
+                Rotor rotor = new MovingRotor(names[i], perm,
+                                              letters.toString());
+                all.add(rotor);
+                rotors[i - ROTORS + pawls] = rotor.copy();
+                notchLetters[i - ROTORS + pawls] = letters.toString();
+            }
+            machine = new Machine(alpha, ROTORS, pawls, all);
+            machine.insertRotors(names);
+        }
+
+        /** The machine measured by checkRotate. */
+        Machine machine;
+
+        /** Pawl rotors, left to right, stepped by the former routine. */
+        Rotor[] rotors;
+
+        /** The notches of each of ROTORS. */
+        String[] notchLetters;
+    }
+
+    /** Measure Machine.checkRotate. */
+    @Benchmark
+    public void checkRotate(Stepped stepped) {
+        stepped.machine.checkRotate();
+    }
+
+    /** Measure the former stepping routine on the same rotors. */
+    @Benchmark
+    public void indexOfRotate(Stepped stepped) {
+        Rotor[] r = stepped.rotors;
+        Alphabet alpha = r[0].alphabet();
+        int first = r.length - 1;
+        for (int k = 0; k < r.length - 1; k++) {
+            int window = alpha.codePoint(r[k + 1].setting());
+            if (stepped.notchLetters[k + 1].indexOf(window) >= 0
+                    && r[k].rotates()) {
+                first = k;
+                break;
+            }
+        }
+        for (int j = r.length - 1; j >= first; j--) {
+            r[j].advance();
+        }
+    }
+
+    /** Number of rotor slots. */
+    private static final int ROTORS = 10;
+
+    /** Size of the alphabet. */
+    private static final int SIZE = 26;
+
+    /** Seed for the random rotors. */
+    private static final long SEED = 61;
+}
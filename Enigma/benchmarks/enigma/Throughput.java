@@ -0,0 +1,267 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** End-to-end throughput of enigma.Main over synthetic workloads (see
+ *  Workload), so that the performance of the whole program, from JVM
+ *  start to output, can be tracked across changes.  Each workload is
+ *  run in each mode by a fresh JVM with --metrics, and the best of
+ *  several runs is reported: its wall time, message characters per
+ *  second of wall time and of conversion, and peak heap.
+ *  @author Dhruv Sirohi
+ */
+class Throughput {
+
+    /** Generate the workloads into ARGS[0] (made if need be) and report
+     *  on them on the standard output.  The rest of ARGS are options:
+     *    --runs=N         Runs of each workload and mode (default 3).
+     *    --only=REGEX     Run only the workloads whose names match.
+     *    --results=FILE   Append a JSON line for each workload and mode
+     *                     to FILE, and report the change in throughput
+     *                     since the last line there for the same ones.
+     *    --label=TEXT     Label for the lines appended (for instance, a
+     *                     commit hash).
+     *    --scale=N        Multiply the characters of each workload by
+     *                     N. */
+    public static void main(String... args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java enigma.Throughput DIR "
+                               + "[--runs=N] [--only=REGEX] "
+                               + "[--results=FILE] [--label=TEXT] "
+                               + "[--scale=N]");
+            System.exit(1);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (String arg : Arrays.asList(args).subList(1, args.length)) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("bad option: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        new Throughput(new File(args[0]), options).run();
+    }
+
+    /** A harness working in DIR, with OPTIONS as for main. */
+    Throughput(File dir, Map<String, String> options) {
+        _dir = dir;
+        _runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        _only = Pattern.compile(options.getOrDefault("only", ".*"));
+        _results = options.containsKey("results")
+            ? new File(options.get("results")) : null;
+        _label = options.getOrDefault("label", "");
+        _scale = Long.parseLong(options.getOrDefault("scale", "1"));
+    }
+
+    /** Return the standard workloads. */
+    static List<Workload> workloads() {
+        return Arrays.asList(
+            new Workload("naval").set("chars", MEGA).set("settings", 100),
+            new Workload("messages").set("chars", MEGA)
+                .set("settings", 20000).set("line", 50).set("plugs", 13),
+            new Workload("notches").set("chars", MEGA).set("notches", 13)
+                .set("settings", 100),
+            new Workload("wide").set("alphabet", 62).set("fixed", 30)
+                .set("moving", 60).set("slots", 12).set("pawls", 8)
+                .set("notches", 31).set("settings", 1000)
+                .set("chars", MEGA).set("plugs", 31),
+            new Workload("unicode").set("alphabet", 400).set("fixed", 20)
+                .set("moving", 40).set("slots", 10).set("pawls", 6)
+                .set("notches", 50).set("settings", 1000)
+                .set("chars", MEGA).set("plugs", 200),
+            new Workload("bulk").set("chars", 16 * MEGA).set("settings", 4)
+                .set("line", 1000));
+    }
+
+    /** Modes in which Main is run: their names, and its options. */
+    private static final String[][] MODES = {
+        { "plain" }, { "compiled", "--compiled" },
+        { "parallel", "--parallel" },
+    };
+
+    /** Run and report on each workload in each mode. */
+    void run() throws IOException, InterruptedException {
+        Map<String, Double> previous = readResults();
+        System.out.printf("%-10s %-9s %9s %12s %12s %9s %8s%n", "workload",
+                          "mode", "wall ms", "chars/s", "conv chars/s",
+                          "heap MB", "change");
+        for (Workload workload : workloads()) {
+            if (!_only.matcher(workload.name()).matches()) {
+                continue;
+            }
+            workload.set("chars", workload.chars() * _scale);
+            workload.write(_dir);
+            for (String[] mode : MODES) {
+                Result best = null;
+                for (int i = 0; i < _runs; i += 1) {
+                    Result result = run(workload, mode);
+                    if (best == null || result.wallNanos < best.wallNanos) {
+                        best = result;
+                    }
+                }
+                String key = workload.name() + "/" + mode[0];
+                Double before = previous.get(key);
+                System.out.printf("%-10s %-9s %9.1f %12.0f %12d %9.1f %8s%n",
+                                  workload.name(), mode[0],
+                                  best.wallNanos / NANOS_PER_MILLI,
+                                  best.charsPerSecond(),
+                                  best.convertCharsPerSecond,
+                                  best.peakHeap / (double) MEGABYTE,
+                                  before == null ? "" : String.format(
+                                      "%+.1f%%", 100 * (best.charsPerSecond()
+                                                        / before - 1)));
+                appendResult(workload, mode[0], best);
+            }
+        }
+    }
+
+    /** The measurements of one run of Main. */
+    private static class Result {
+        /** Wall time of the run, in nanoseconds. */
+        long wallNanos;
+        /** Message characters converted. */
+        long chars;
+        /** Characters converted per second of conversion, by Main. */
+        long convertCharsPerSecond;
+        /** Peak heap of the run, in bytes. */
+        long peakHeap;
+
+        /** Return the characters converted per second of wall time. */
+        double charsPerSecond() {
+            return chars * NANOS_PER_SECOND / wallNanos;
+        }
+    }
+
+    /** Return the measurements of a run of Main over WORKLOAD in MODE,
+     *  from a MODES entry. */
+    private Result run(Workload workload, String[] mode)
+        throws IOException, InterruptedException {
+        File output = new File(_dir, workload.name() + ".out"),
+            metrics = new File(_dir, workload.name() + ".json");
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(new File(System.getProperty("java.home"), "bin"),
+                         "java").getPath(),
+                "-Dfile.encoding=UTF-8",
+                "-cp", System.getProperty("java.class.path"), "enigma.Main",
+                workload.config(_dir).getPath(),
+                workload.input(_dir).getPath(), output.getPath(),
+                "--metrics=" + metrics.getPath()));
+        command.addAll(Arrays.asList(mode).subList(1, mode.length));
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        int status = process.waitFor();
+        Result result = new Result();
+        result.wallNanos = System.nanoTime() - start;
+        if (status != 0) {
+            throw new IOException(String.format("%s failed in mode %s (%s)",
+                                                workload.name(), mode[0],
+                                                workload));
+        }
+        String json = new String(Files.readAllBytes(metrics.toPath()),
+                                 StandardCharsets.UTF_8);
+        result.chars = field(json, "characters");
+        result.convertCharsPerSecond = field(json,
+                                             "convertCharactersPerSecond");
+        result.peakHeap = field(json, "peakHeapBytes");
+        if (result.chars != workload.chars()) {
+            throw new IOException(String.format(
+                    "%s converted %d characters, not %d, in mode %s",
+                    workload.name(), result.chars, workload.chars(),
+                    mode[0]));
+        }
+        return result;
+    }
+
+    /** Return the value of the integer field NAME in JSON. */
+    private static long field(String json, String name) throws IOException {
+        Matcher mat = Pattern.compile("\"" + name + "\": (\\d+)")
+            .matcher(json);
+        if (!mat.find()) {
+            throw new IOException("no " + name + " in metrics");
+        }
+        return Long.parseLong(mat.group(1));
+    }
+
+    /** Return the characters per second of wall time last recorded in
+     *  _results for each WORKLOAD/MODE, if there are results. */
+    private Map<String, Double> readResults() throws IOException {
+        Map<String, Double> result = new HashMap<>();
+        if (_results == null || !_results.exists()) {
+            return result;
+        }
+        for (String line : Files.readAllLines(_results.toPath(),
+                                              StandardCharsets.UTF_8)) {
+            Matcher mat = RESULT_LINE.matcher(line);
+            if (mat.find()) {
+                result.put(mat.group(1) + "/" + mat.group(2),
+                           Double.parseDouble(mat.group(3)));
+            }
+        }
+        return result;
+    }
+
+    /** Append RESULT, for WORKLOAD in the mode named MODE, to _results
+     *  as a line of JSON, if there are results. */
+    private void appendResult(Workload workload, String mode, Result result)
+        throws IOException {
+        if (_results == null) {
+            return;
+        }
+        String line = String.format(
+                "{\"workload\": \"%s\", \"mode\": \"%s\", "
+                + "\"charsPerSecond\": %.0f, \"label\": \"%s\", "
+                + "\"wallNanos\": %d, \"chars\": %d, "
+                + "\"convertCharsPerSecond\": %d, \"peakHeapBytes\": %d, "
+                + "\"params\": \"%s\"}%n",
+                workload.name(), mode, result.charsPerSecond(),
+                _label.replace("\\", "\\\\").replace("\"", "\\\""),
+                result.wallNanos, result.chars, result.convertCharsPerSecond,
+                result.peakHeap, workload);
+        Files.write(_results.toPath(), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /** Matches the workload, mode and characters per second of a line
+     *  written by appendResult. */
+    private static final Pattern RESULT_LINE = Pattern.compile(
+        "\"workload\": \"([^\"]*)\", \"mode\": \"([^\"]*)\", "
+        + "\"charsPerSecond\": ([0-9.]+)");
+
+    /** A mebi-character. */
+    private static final long MEGA = 1 << 20;
+
+    /** Bytes in a megabyte. */
+    private static final long MEGABYTE = 1 << 20;
+
+    /** Nanoseconds in a second and a millisecond. */
+    private static final double NANOS_PER_SECOND = 1e9, NANOS_PER_MILLI = 1e6;
+
+    /** Directory holding the workloads and Main's output. */
+    private final File _dir;
+
+    /** Runs of each workload and mode. */
+    private final int _runs;
+
+    /** Selects the workloads run by name. */
+    private final Pattern _only;
+
+    /** File of results, or null. */
+    private final File _results;
+
+    /** Label of the results appended. */
+    private final String _label;
+
+    /** Factor by which the characters of each workload are multiplied. */
+    private final long _scale;
+}
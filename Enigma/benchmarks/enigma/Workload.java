@@ -0,0 +1,370 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** A synthetic workload for the whole of enigma.Main: a configuration and
+ *  an input file, generated reproducibly from a seed.  The configuration
+ *  has an alphabet of any size (ASCII letters and digits up to 62
+ *  characters, and otherwise letters from U+0100 on), any number of
+ *  fixed and moving rotors with any number of notches, and two
+ *  reflectors.  The input has any number of setting lines, each
+ *  choosing rotors, positions, ring settings and a plugboard of any
+ *  number of pairs at random, followed by message lines in groups of
+ *  five.  Files are written in UTF-8, so that Main must read them with
+ *  -Dfile.encoding=UTF-8 when the alphabet is not ASCII.
+ *  @author Dhruv Sirohi
+ */
+class Workload {
+
+    /** Write the workload described by ARGS into the directory ARGS[0]
+     *  as NAME.conf and NAME.in, where ARGS[1] is NAME and the rest of
+     *  ARGS are KEY=VALUE pairs setting the fields of a Workload named
+     *  NAME (see set). */
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java enigma.Workload DIR NAME "
+                               + "[KEY=VALUE]...");
+            System.exit(1);
+        }
+        Workload workload = new Workload(args[1]);
+        for (int i = 2; i < args.length; i += 1) {
+            int eq = args[i].indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("not KEY=VALUE: "
+                                                   + args[i]);
+            }
+            workload.set(args[i].substring(0, eq),
+                         Long.parseLong(args[i].substring(eq + 1)));
+        }
+        workload.write(new File(args[0]));
+    }
+
+    /** A workload named NAME, with default sizes. */
+    Workload(String name) {
+        _name = name;
+    }
+
+    /** Set my field KEY to VALUE, and return me.  The keys are seed,
+     *  alphabet (its size, which must be even), fixed and moving (the
+     *  numbers of rotors of each kind available), slots and pawls (of
+     *  the machine), notches (on each moving rotor), settings (the
+     *  number of setting lines), chars (the total number of message
+     *  characters), line (characters per message line) and plugs (pairs
+     *  on each plugboard). */
+    Workload set(String key, long value) {
+        switch (key) {
+        case "seed":
+            _seed = value;
+            break;
+        case "alphabet":
+            _alphabet = (int) value;
+            break;
+        case "fixed":
+            _fixed = (int) value;
+            break;
+        case "moving":
+            _moving = (int) value;
+            break;
+        case "slots":
+            _slots = (int) value;
+            break;
+        case "pawls":
+            _pawls = (int) value;
+            break;
+        case "notches":
+            _notches = (int) value;
+            break;
+        case "settings":
+            _settings = value;
+            break;
+        case "chars":
+            _chars = value;
+            break;
+        case "line":
+            _line = (int) value;
+            break;
+        case "plugs":
+            _plugs = (int) value;
+            break;
+        default:
+            throw new IllegalArgumentException("unknown workload key: "
+                                               + key);
+        }
+        return this;
+    }
+
+    /** Return my name. */
+    String name() {
+        return _name;
+    }
+
+    /** Return the total number of message characters in my input. */
+    long chars() {
+        return _chars;
+    }
+
+    /** Return true iff my alphabet is ASCII. */
+    boolean ascii() {
+        return _alphabet <= ASCII_LETTERS.length();
+    }
+
+    /** Return a description of me as KEY=VALUE pairs. */
+    @Override
+    public String toString() {
+        return String.format("seed=%d alphabet=%d fixed=%d moving=%d "
+                             + "slots=%d pawls=%d notches=%d settings=%d "
+                             + "chars=%d line=%d plugs=%d", _seed, _alphabet,
+                             _fixed, _moving, _slots, _pawls, _notches,
+                             _settings, _chars, _line, _plugs);
+    }
+
+    /** Return my configuration file in DIR. */
+    File config(File dir) {
+        return new File(dir, _name + ".conf");
+    }
+
+    /** Return my input file in DIR. */
+    File input(File dir) {
+        return new File(dir, _name + ".in");
+    }
+
+    /** Write my configuration and input files into DIR, which is made if
+     *  need be. */
+    void write(File dir) throws IOException {
+        check();
+        dir.mkdirs();
+        Random random = new Random(_seed);
+        int[] chars = characters();
+        try (Writer out = writer(config(dir))) {
+            writeConfig(out, chars, random);
+        }
+        try (Writer out = writer(input(dir))) {
+            writeInput(out, chars, random);
+        }
+    }
+
+    /** Check that my fields describe a valid configuration. */
+    private void check() {
+        if (_alphabet < 2 || _alphabet % 2 != 0) {
+            throw new IllegalArgumentException("alphabet must be even and "
+                                               + "at least 2");
+        }
+        if (_slots < 2 || _pawls < 0 || _pawls >= _slots
+                || _moving < _pawls || _fixed < _slots - 1 - _pawls
+                || _notches < 0 || _notches > _alphabet || _settings < 1
+                || _chars < 0 || _line < 1 || _plugs < 0
+                || 2 * _plugs > _alphabet) {
+            throw new IllegalArgumentException("bad workload: " + this);
+        }
+    }
+
+    /** Return a buffered UTF-8 writer to FILE. */
+    private static Writer writer(File file) throws IOException {
+        return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /** Return the code points of my alphabet. */
+    private int[] characters() {
+        int[] result = new int[_alphabet];
+        if (ascii()) {
+            for (int i = 0; i < result.length; i += 1) {
+                result[i] = ASCII_LETTERS.charAt(i);
+            }
+            return result;
+        }
+        int c = FIRST_WIDE_CHAR;
+        for (int i = 0; i < result.length; c += 1) {
+            if (Character.isLetter(c) && Character.isBmpCodePoint(c)) {
+                result[i] = c;
+                i += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Write my configuration to OUT, over the alphabet CHARS, with
+     *  rotors chosen by RANDOM. */
+    private void writeConfig(Writer out, int[] chars, Random random)
+        throws IOException {
+        out.write(new String(chars, 0, chars.length));
+        out.write(String.format("\n %d %d\n", _slots, _pawls));
+        for (String name : REFLECTORS) {
+            out.write(" " + name + " R");
+            writeCycles(out, chars, pairs(chars.length, chars.length / 2,
+                                          random));
+        }
+        for (int i = 0; i < _fixed; i += 1) {
+            out.write(" F" + i + " N");
+            writeCycles(out, chars, cycles(chars.length, random));
+        }
+        for (int i = 0; i < _moving; i += 1) {
+            out.write(" M" + i + " M");
+            for (int k : sample(chars.length, _notches, random)) {
+                out.write(Character.toChars(chars[k]));
+            }
+            writeCycles(out, chars, cycles(chars.length, random));
+        }
+    }
+
+    /** Write CYCLES, a list of cycles of indices into CHARS, to OUT as
+     *  the rest of a rotor's description, CYCLES_PER_LINE to a line. */
+    private static void writeCycles(Writer out, int[] chars,
+                                    List<int[]> cycles) throws IOException {
+        for (int i = 0; i < cycles.size(); i += 1) {
+            if (i > 0 && i % CYCLES_PER_LINE == 0) {
+                out.write("\n   ");
+            }
+            out.write(" (");
+            for (int k : cycles.get(i)) {
+                out.write(Character.toChars(chars[k]));
+            }
+            out.write(")");
+        }
+        out.write("\n");
+    }
+
+    /** Write my input to OUT, over the alphabet CHARS, with settings and
+     *  messages chosen by RANDOM. */
+    private void writeInput(Writer out, int[] chars, Random random)
+        throws IOException {
+        long written = 0;
+        for (long s = 0; s < _settings; s += 1) {
+            writeSetting(out, chars, random);
+            long end = _chars * (s + 1) / _settings;
+            while (written < end) {
+                int length = (int) Math.min(_line, end - written);
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < length; i += 1) {
+                    if (i > 0 && i % GROUP == 0) {
+                        line.append(' ');
+                    }
+                    line.appendCodePoint(chars[random.nextInt(chars.length)]);
+                }
+                out.write(line.append('\n').toString());
+                written += length;
+            }
+        }
+    }
+
+    /** Write a setting line to OUT, over the alphabet CHARS, choosing
+     *  rotors, positions, ring settings and plugboard by RANDOM. */
+    private void writeSetting(Writer out, int[] chars, Random random)
+        throws IOException {
+        StringBuilder line = new StringBuilder("* ");
+        line.append(REFLECTORS[random.nextInt(REFLECTORS.length)]);
+        for (int k : sample(_fixed, _slots - 1 - _pawls, random)) {
+            line.append(" F").append(k);
+        }
+        for (int k : sample(_moving, _pawls, random)) {
+            line.append(" M").append(k);
+        }
+        for (int field = 0; field < 2; field += 1) {
+            line.append(' ');
+            for (int i = 1; i < _slots; i += 1) {
+                line.appendCodePoint(chars[random.nextInt(chars.length)]);
+            }
+        }
+        for (int[] pair : pairs(chars.length, _plugs, random)) {
+            line.append(" (").appendCodePoint(chars[pair[0]])
+                .appendCodePoint(chars[pair[1]]).append(')');
+        }
+        out.write(line.append('\n').toString());
+    }
+
+    /** Return K distinct integers in [0, N) chosen by RANDOM, in random
+     *  order. */
+    private static int[] sample(int n, int k, Random random) {
+        List<Integer> all = new ArrayList<>(n);
+        for (int i = 0; i < n; i += 1) {
+            all.add(i);
+        }
+        Collections.shuffle(all, random);
+        int[] result = new int[k];
+        for (int i = 0; i < k; i += 1) {
+            result[i] = all.get(i);
+        }
+        return result;
+    }
+
+    /** Return the cycles of a permutation of [0, N) chosen by RANDOM. */
+    private static List<int[]> cycles(int n, Random random) {
+        int[] image = sample(n, n, random);
+        boolean[] seen = new boolean[n];
+        List<int[]> result = new ArrayList<>();
+        for (int start = 0; start < n; start += 1) {
+            if (!seen[start]) {
+                List<Integer> cycle = new ArrayList<>();
+                for (int i = start; !seen[i]; i = image[i]) {
+                    seen[i] = true;
+                    cycle.add(i);
+                }
+                result.add(cycle.stream().mapToInt(i -> i).toArray());
+            }
+        }
+        return result;
+    }
+
+    /** Return K disjoint pairs of integers in [0, N) chosen by RANDOM. */
+    private static List<int[]> pairs(int n, int k, Random random) {
+        int[] order = sample(n, 2 * k, random);
+        List<int[]> result = new ArrayList<>();
+        for (int i = 0; i < k; i += 1) {
+            result.add(new int[] { order[2 * i], order[2 * i + 1] });
+        }
+        return result;
+    }
+
+    /** Characters of ASCII alphabets, in order. */
+    private static final String ASCII_LETTERS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /** Where the characters of alphabets that are not ASCII start. */
+    private static final int FIRST_WIDE_CHAR = 0x100;
+
+    /** Names of the reflectors. */
+    private static final String[] REFLECTORS = { "RA", "RB" };
+
+    /** Cycles written on each line of a rotor's description. */
+    private static final int CYCLES_PER_LINE = 16;
+
+    /** Characters in a group of a message line. */
+    private static final int GROUP = 5;
+
+    /** Name of the workload, and of its files. */
+    private final String _name;
+
+    /** Seed of the random choices. */
+    private long _seed = 61;
+
+    /** Size of the alphabet. */
+    private int _alphabet = 26;
+
+    /** Numbers of fixed and moving rotors available. */
+    private int _fixed = 4, _moving = 8;
+
+    /** Numbers of rotor slots and pawls. */
+    private int _slots = 5, _pawls = 3;
+
+    /** Notches on each moving rotor. */
+    private int _notches = 1;
+
+    /** Number of setting lines. */
+    private long _settings = 10;
+
+    /** Total message characters. */
+    private long _chars = 1 << 20;
+
+    /** Characters per message line. */
+    private int _line = 60;
+
+    /** Pairs on each plugboard. */
+    private int _plugs = 10;
+}
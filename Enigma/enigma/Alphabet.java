@@ -1,7 +1,14 @@
 package enigma;
 
+import java.util.Arrays;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may include characters outside the Basic
+ *  Multilingual Plane, and every lookup takes constant time: the index
+ *  of a character is found in a table covering the range of the
+ *  alphabet's code points when that range is small, and otherwise in an
+ *  open-addressed hash table of code points.
  *  @author Dhruv Sirohi
  */
 class Alphabet {
@@ -10,50 +17,92 @@ class Alphabet {
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
         chars = chars.replaceAll(" ", "");
-        _alphabetList = chars;
-        if (checkRepeat()) {
-            throw new EnigmaException("Duplicate in alphabet.");
-        } else if (this.contains('(')
+        _codePoints = chars.codePoints().toArray();
+        int min = Integer.MAX_VALUE, max = -1;
+        for (int cp : _codePoints) {
+            min = Math.min(min, cp);
+            max = Math.max(max, cp);
+        }
+        _base = _codePoints.length == 0 ? 0 : min;
+        if (max - _base < Math.max(DENSE_RANGE,
+                                   DENSE_FACTOR * _codePoints.length)) {
+            _dense = new int[max - _base + 1];
+            Arrays.fill(_dense, -1);
+            _keys = null;
+            _values = null;
+        } else {
+            int capacity = Integer.highestOneBit(2 * _codePoints.length) * 2;
+            _dense = null;
+            _keys = new int[capacity];
+            _values = new int[capacity];
+            Arrays.fill(_keys, -1);
+        }
+        for (int i = 0; i < _codePoints.length; i++) {
+            if (!put(_codePoints[i], i)) {
+                throw new EnigmaException("Duplicate in alphabet.");
+            }
+        }
+        if (this.contains('(')
                 || this.contains(')') || this.contains('*')) {
             throw new EnigmaException("Alphabet is unacceptable.");
         }
+        _bmp = max < Character.MIN_SUPPLEMENTARY_CODE_POINT;
     }
 
-    /** Handles case of Ringstellung,
-     * updating the alphabet of the particular rotor.
-     * @param ch - Ringstellung setting supplied in.
-     */
-    void updateRing(char ch) {
-        int index = _alphabetList.indexOf(ch);
-        int length = _alphabetList.length();
-        if (index > 0) {
-            String first = _alphabetList.substring(0, index);
-            _alphabetList = _alphabetList.substring(index, length);
-            _alphabetList += first;
+    /** Record that code point CP has index INDEX, returning false if it
+     *  already had one. */
+    private boolean put(int cp, int index) {
+        if (_dense != null) {
+            if (_dense[cp - _base] >= 0) {
+                return false;
+            }
+            _dense[cp - _base] = index;
+            return true;
+        }
+        int mask = _keys.length - 1;
+        for (int slot = hash(cp) & mask; ; slot = (slot + 1) & mask) {
+            if (_keys[slot] == cp) {
+                return false;
+            } else if (_keys[slot] < 0) {
+                _keys[slot] = cp;
+                _values[slot] = index;
+                return true;
+            }
         }
     }
 
+    /** Return the index of code point CP, or -1 if it is not in me. */
+    private int lookup(int cp) {
+        if (_dense != null) {
+            int offset = cp - _base;
+            return offset >= 0 && offset < _dense.length ? _dense[offset] : -1;
+        }
+        int mask = _keys.length - 1;
+        for (int slot = hash(cp) & mask; ; slot = (slot + 1) & mask) {
+            if (_keys[slot] == cp) {
+                return _values[slot];
+            } else if (_keys[slot] < 0) {
+                return -1;
+            }
+        }
+    }
+
+    /** Return a hash of CP that spreads nearby code points apart. */
+    private static int hash(int cp) {
+        int h = cp * HASH_MULTIPLIER;
+        return h ^ (h >>> HASH_SHIFT);
+    }
+
     /** Returns the String of alphabet
      * used.
      * @return String of alphabet.
      */
     String returnAlpha() {
-        return _alphabetList;
-    }
-
-    /** Checks if any letter has been repeated in Alphabet.
-     *  If returns true then ERROR.
-     * @return Boolean value.
-     */
-    boolean checkRepeat() {
-        for (int i = 0; i < _alphabetList.length(); i++) {
-            for (int j = i + 1; j < _alphabetList.length(); j++) {
-                if (_alphabetList.charAt(i) == _alphabetList.charAt(j)) {
-                    return true;
-                }
-            }
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            result.appendCodePoint(codePoint(i));
         }
-        return false;
+        return result.toString();
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -63,26 +112,86 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _alphabetList.length();
+        return _codePoints.length;
     }
 
-    /** Returns true if CH is in this alphabet. */
-    boolean contains(char ch) {
-        return (_alphabetList.indexOf(ch) >= 0);
+    /** Returns true iff every character of this alphabet is in the Basic
+     *  Multilingual Plane, and so is a single char. */
+    boolean bmp() {
+        return _bmp;
+    }
+
+    /** Returns true if code point CH is in this alphabet. */
+    boolean contains(int ch) {
+        return lookup(ch) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size(), which must be in the Basic Multilingual
+     *  Plane (see codePoint). */
     char toChar(int index) {
-        return _alphabetList.charAt(index);
+        return (char) codePoint(index);
     }
 
-    /** Returns the index of character CH which must be in
-     *  the alphabet. This is the inverse of toChar(). */
-    int toInt(char ch) {
-        return _alphabetList.indexOf(ch);
+    /** Returns the code point of character number INDEX in the
+     *  alphabet, where 0 <= INDEX < size(). */
+    int codePoint(int index) {
+        return _codePoints[index];
+    }
+
+    /** Returns the index of code point CH, which must be in
+     *  the alphabet. This is the inverse of codePoint(). */
+    int toInt(int ch) {
+        return lookup(ch);
+    }
+
+    /** Returns the indices of the characters of TEXT, all of which must
+     *  be in the alphabet. */
+    int[] toInts(String text) {
+        int[] result = text.codePoints().toArray();
+        for (int i = 0; i < result.length; i++) {
+            int index = toInt(result[i]);
+            if (index < 0) {
+                throw new EnigmaException("'"
+                        + new String(Character.toChars(result[i])) + "'"
+                        + " not in alphabet.");
+            }
+            result[i] = index;
+        }
+        return result;
     }
 
-    /** String of letters used.*/
-    private String _alphabetList;
+    /** Largest range of code points always indexed by a table covering
+     *  the whole range. */
+    private static final int DENSE_RANGE = 1 << 12;
+
+    /** Ratio of the range of code points to the size of the alphabet
+     *  below which a table covering the range is used even when it is
+     *  larger than DENSE_RANGE. */
+    private static final int DENSE_FACTOR = 8;
+
+    /** Multiplier scrambling code points for the hash table (the golden
+     *  ratio in fixed point). */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /** Shift folding the high bits of a hash into its low ones. */
+    private static final int HASH_SHIFT = 16;
+
+    /** My code points, in order. */
+    private final int[] _codePoints;
+
+    /** Smallest of my code points, when _dense is in use. */
+    private final int _base;
+
+    /** When my code points span a small range, the index of each code
+     *  point CP in that range at _dense[CP - _base], or -1; else null. */
+    private final int[] _dense;
+
+    /** Otherwise, an open-addressed table of my code points (-1 in free
+     *  slots) and the index of each. */
+    private final int[] _keys, _values;
+
+    /** True iff all my code points are in the Basic Multilingual
+     *  Plane. */
+    private final boolean _bmp;
 }
@@ -0,0 +1,72 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Dhruv Sirohi
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Check that ALPHA holds exactly the code points of CHARS, in
+     *  order. */
+    private void checkAlphabet(String testId, Alphabet alpha, String chars) {
+        int[] codePoints = chars.codePoints().toArray();
+        assertEquals(msg(testId, "wrong size"), codePoints.length,
+                     alpha.size());
+        for (int i = 0; i < codePoints.length; i++) {
+            assertEquals(msg(testId, "wrong character #%d", i),
+                         codePoints[i], alpha.codePoint(i));
+            assertEquals(msg(testId, "wrong index of #%d", i),
+                         i, alpha.toInt(codePoints[i]));
+        }
+        assertEquals(msg(testId, "wrong string"), chars, alpha.returnAlpha());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkUpper() {
+        checkAlphabet("upper", UPPER, UPPER_STRING);
+        assertTrue("BMP alphabet", UPPER.bmp());
+        assertFalse("Contains lower case", UPPER.contains('a'));
+        assertEquals("Index of absent character", -1, UPPER.toInt('a'));
+    }
+
+    @Test
+    public void checkSparseAlphabet() {
+        String chars = "AZ09\u00e9\u0416\u4e2d\ud83d\ude00\ud800\udf48";
+        Alphabet alpha = new Alphabet(chars);
+        checkAlphabet("sparse", alpha, chars);
+        assertFalse("Supplementary alphabet", alpha.bmp());
+        assertFalse("Contains a lone surrogate", alpha.contains('\ud83d'));
+        assertArrayEquals("Wrong indices", new int[] { 7, 0, 6 },
+                          alpha.toInts("\ud83d\ude00A\u4e2d"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkDuplicate() {
+        new Alphabet("AB\u4e2dCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkSparseDuplicate() {
+        new Alphabet("A\ud83d\ude00\u4e2d\ud83d\ude00");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkParenthesis() {
+        new Alphabet("AB(C");
+    }
+
+}
@@ -0,0 +1,237 @@
+package enigma;
+
+/** Many Enigma machines of one shape, enciphering in lock step.  Each
+ *  machine is a lane: its rotor tables, positions, notches and plugboard
+ *  are laid out so that lane L's part of each table starts at L times
+ *  the alphabet size, and the positions of each slot are kept together,
+ *  one per lane.  Each keystroke then converts one letter in every lane,
+ *  using the JDK's incubating Vector API (jdk.incubator.vector) to step
+ *  and convert whole vectors of lanes at once where that module has been
+ *  added to the running JVM (with --add-modules), and plain loops
+ *  otherwise, and for lanes left over.  This suits enciphering one
+ *  message under many keys, or many messages under keys for machines
+ *  of the same shape.
+ *  @author Dhruv Sirohi
+ */
+class BatchMachine {
+
+    /** Something that converts a letter in each of a range of lanes of a
+     *  BatchMachine, stepping their rotors first, as Machine.convert
+     *  does. */
+    interface Kernel {
+
+        /** Convert LETTERS[L] (an index in the alphabet) for a run of
+         *  lanes L of BATCH starting from 0, replacing each with its
+         *  conversion.  Return the number of lanes converted. */
+        int convert(BatchMachine batch, int[] letters);
+    }
+
+    /** A batch of one lane for each of MACHINES, each in the state of
+     *  its machine, using the Vector API if it is available. */
+    BatchMachine(Machine[] machines) {
+        this(machines, true);
+    }
+
+    /** A batch of one lane for each of MACHINES, each in the state of
+     *  its machine, using the Vector API iff VECTOR and it is available.
+     *  The machines must all have their rotors inserted and plugboards
+     *  set, and the same numbers of rotors and pawls over alphabets of
+     *  the same size.  They are not changed by my conversions. */
+    BatchMachine(Machine[] machines, boolean vector) {
+        if (machines.length == 0) {
+            throw new EnigmaException("No machines to batch.");
+        }
+        Machine first = machines[0];
+        _lanes = machines.length;
+        _size = first.alphabet().size();
+        _slots = first.numRotors();
+        _firstPawl = _slots - first.numPawls();
+        _forward = new int[_slots][_lanes * _size];
+        _inverse = new int[_slots][_lanes * _size];
+        _notch = new int[_slots][_lanes * _size];
+        _position = new int[_slots][_lanes];
+        _plugboard = new int[_lanes * _size];
+        _bases = new int[_lanes];
+        _letters = new int[_lanes];
+        for (int lane = 0; lane < _lanes; lane++) {
+            Machine m = machines[lane];
+            if (m.alphabet().size() != _size || m.numRotors() != _slots
+                    || m.numPawls() != first.numPawls()) {
+                throw new EnigmaException("Machines of different shapes.");
+            }
+            int base = lane * _size;
+            _bases[lane] = base;
+            for (int s = 0; s < _slots; s++) {
+                Rotor rotor = m.rotor(s);
+                Permutation perm = rotor.permutation();
+                System.arraycopy(perm.forwardTable(), 0, _forward[s], base,
+                                 _size);
+                System.arraycopy(perm.inverseTable(), 0, _inverse[s], base,
+                                 _size);
+                _position[s][lane] = rotor.setting();
+                if (rotor instanceof MovingRotor) {
+                    for (int p : ((MovingRotor) rotor).notchSettings()) {
+                        _notch[s][base + p] = 1;
+                    }
+                }
+            }
+            System.arraycopy(m.plugboard().forwardTable(), 0, _plugboard,
+                             base, _size);
+        }
+        _kernel = vector ? vectorKernel() : null;
+    }
+
+    /** Return a kernel using the Vector API, or null if the module
+     *  providing it is not in the running JVM. */
+    private static Kernel vectorKernel() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return null;
+        }
+        try {
+            return (Kernel) Class.forName(VECTOR_KERNEL)
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Return my number of lanes. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Return true iff I use the Vector API. */
+    boolean vectorized() {
+        return _kernel != null;
+    }
+
+    /** Convert MESSAGES[L][START .. START+LENGTH-1] (indices in the
+     *  alphabet) in lane L, for every lane L, storing the conversions at
+     *  the same places in RESULTS[L], which may be MESSAGES[L].  Lanes
+     *  may share messages, but not results. */
+    void convert(int[][] messages, int start, int length, int[][] results) {
+        int[] letters = _letters;
+        for (int t = start; t < start + length; t++) {
+            for (int lane = 0; lane < _lanes; lane++) {
+                letters[lane] = messages[lane][t];
+            }
+            int lane = _kernel == null ? 0 : _kernel.convert(this, letters);
+            for (; lane < _lanes; lane++) {
+                step(lane);
+                letters[lane] = substitute(lane, letters[lane]);
+            }
+            for (lane = 0; lane < _lanes; lane++) {
+                results[lane][t] = letters[lane];
+            }
+        }
+    }
+
+    /** Return the conversions of MESSAGES[L] in lane L, for every lane
+     *  L.  The messages must all have the same length and consist of
+     *  characters of ALPHABET, that of my machines. */
+    String[] convert(Alphabet alphabet, String... messages) {
+        if (messages.length != _lanes) {
+            throw new EnigmaException("Wrong number of messages.");
+        }
+        int[][] indices = new int[_lanes][];
+        for (int lane = 0; lane < _lanes; lane++) {
+            indices[lane] = alphabet.toInts(messages[lane]);
+            if (indices[lane].length != indices[0].length) {
+                throw new EnigmaException("Messages of different lengths.");
+            }
+        }
+        convert(indices, 0, indices[0].length, indices);
+        String[] result = new String[_lanes];
+        for (int lane = 0; lane < _lanes; lane++) {
+            StringBuilder text = new StringBuilder();
+            for (int c : indices[lane]) {
+                text.appendCodePoint(alphabet.codePoint(c));
+            }
+            result[lane] = text.toString();
+        }
+        return result;
+    }
+
+    /** Advance the rotors of lane LANE as Machine.checkRotate does.  A
+     *  pawl rotor advances iff it is the rightmost, or it or a pawl
+     *  rotor to its left has its right neighbor at a notch; each notch
+     *  is read before the rotor it belongs to can move. */
+    private void step(int lane) {
+        int base = _bases[lane];
+        boolean advance = false;
+        for (int j = _firstPawl; j < _slots; j++) {
+            advance |= j == _slots - 1
+                || _notch[j + 1][base + _position[j + 1][lane]] != 0;
+            if (advance) {
+                int p = _position[j][lane] + 1;
+                _position[j][lane] = p == _size ? 0 : p;
+            }
+        }
+    }
+
+    /** Return the conversion of C by lane LANE in its current
+     *  position. */
+    private int substitute(int lane, int c) {
+        int base = _bases[lane];
+        c = _plugboard[base + c];
+        for (int s = _slots - 1; s >= 0; s--) {
+            c = shift(_forward[s], base, _position[s][lane], c);
+        }
+        for (int s = 1; s < _slots; s++) {
+            c = shift(_inverse[s], base, _position[s][lane], c);
+        }
+        return _plugboard[base + c];
+    }
+
+    /** Return the image of C under the part of TABLE starting at BASE,
+     *  offset by POSITION, as Rotor.convertForward does. */
+    private int shift(int[] table, int base, int position, int c) {
+        int input = c + position;
+        if (input >= _size) {
+            input -= _size;
+        }
+        int result = table[base + input] - position;
+        return result < 0 ? result + _size : result;
+    }
+
+    /** Name of the module providing the Vector API. */
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /** Name of the kernel class using it. */
+    private static final String VECTOR_KERNEL = "enigma.VectorKernel";
+
+    /** Number of lanes. */
+    final int _lanes;
+
+    /** Size of the alphabet. */
+    final int _size;
+
+    /** Number of rotor slots. */
+    final int _slots;
+
+    /** Slot of the leftmost pawl rotor (_slots if none). */
+    final int _firstPawl;
+
+    /** The forward and inverse permutation tables of the rotors in each
+     *  slot, lane by lane. */
+    final int[][] _forward, _inverse;
+
+    /** For the rotor in each slot, lane by lane, 1 at each position at
+     *  which it is at a notch, and 0 elsewhere. */
+    final int[][] _notch;
+
+    /** The position of the rotor in each slot, in each lane. */
+    final int[][] _position;
+
+    /** The plugboard of each lane. */
+    final int[] _plugboard;
+
+    /** The start of each lane's part of the tables. */
+    final int[] _bases;
+
+    /** The letter being converted in each lane. */
+    private final int[] _letters;
+
+    /** The kernel using the Vector API, or null. */
+    private final Kernel _kernel;
+}
@@ -0,0 +1,112 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the BatchMachine class.
+ *  @author Dhruv Sirohi
+ */
+public class BatchMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Names of the rotors of a machine from MachineTest.manyNotchMachine,
+     *  left to right. */
+    private static final String[] ROTORS = {
+        "B", "Beta", "Gamma", "I", "VI", "VIII",
+    };
+
+    /** Return a random string of LENGTH letters of UPPER_STRING, chosen
+     *  by RANDOM. */
+    private static String letters(Random random, int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i += 1) {
+            result.append(UPPER_STRING.charAt(random.nextInt(26)));
+        }
+        return result.toString();
+    }
+
+    /** Return LANES machines from MachineTest.manyNotchMachine with PAWLS
+     *  pawls, with rotor positions, ring settings and plugboards chosen
+     *  by RANDOM. */
+    private static Machine[] machines(int lanes, int pawls, Random random) {
+        Machine[] result = new Machine[lanes];
+        for (int lane = 0; lane < lanes; lane += 1) {
+            Machine m = MachineTest.manyNotchMachine(pawls);
+            m.insertRotors(ROTORS);
+            m.stellungSet(letters(random, random.nextInt(ROTORS.length)));
+            m.setRotors(letters(random, ROTORS.length - 1));
+            String pair = letters(random, 2);
+            m.setPlugboard(new Permutation(pair.charAt(0) == pair.charAt(1)
+                                           ? "" : "(" + pair + ")", UPPER));
+            result[lane] = m;
+        }
+        return result;
+    }
+
+    /** Check that a batch of LANES random machines with PAWLS pawls,
+     *  using the Vector API iff VECTOR, converts like the machines
+     *  themselves, given a message of its own for each lane or a shared
+     *  one. */
+    private static void checkBatch(int lanes, int pawls, boolean vector) {
+        Random random = new Random(61 * lanes + pawls);
+        Machine[] machines = machines(lanes, pawls, random);
+        String[] messages = new String[lanes];
+        String shared = letters(random, 2000);
+        for (int lane = 0; lane < lanes; lane += 1) {
+            messages[lane] = lane % 2 == 0 ? shared : letters(random, 2000);
+        }
+        BatchMachine batch = new BatchMachine(machines, vector);
+        assertEquals("Vector API not used where available",
+                     vector && ModuleLayer.boot()
+                     .findModule("jdk.incubator.vector").isPresent(),
+                     batch.vectorized());
+        String[] result = batch.convert(UPPER, messages);
+        for (int lane = 0; lane < lanes; lane += 1) {
+            assertEquals(msg("batch", "lane %d of %d, %d pawls%s", lane,
+                             lanes, pawls, vector ? ", vector" : ""),
+                         machines[lane].convert(messages[lane]),
+                         result[lane]);
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkScalar() {
+        for (int pawls = 0; pawls <= 5; pawls += 1) {
+            for (int lanes : new int[] { 1, 3, 17 }) {
+                checkBatch(lanes, pawls, false);
+            }
+        }
+    }
+
+    /** Also run when the Vector API is absent, in which case it checks
+     *  the fallback again. */
+    @Test
+    public void checkVector() {
+        for (int pawls = 0; pawls <= 5; pawls += 1) {
+            for (int lanes : new int[] { 1, 8, 17, 35 }) {
+                checkBatch(lanes, pawls, true);
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkShapes() {
+        Random random = new Random(61);
+        new BatchMachine(new Machine[] {
+            machines(1, 3, random)[0], machines(1, 4, random)[0] });
+    }
+
+}
@@ -0,0 +1,554 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A ciphertext-only attack on an Enigma machine by hill climbing.
+ *  Each restart picks a rotor order and starting positions at random.
+ *  It then alternately climbs the rotor positions, one rotor at a
+ *  time, by the index of coincidence of the decryption, and the
+ *  plugboard, one pair at a time, by the log-likelihood of the
+ *  decryption's n-grams (or by its index of coincidence if no n-grams
+ *  are given), until neither improves.  Ring settings are left at the
+ *  first letter of the alphabet.
+ *
+ *  Scoring a plugboard does not use the machine at all.  The
+ *  substitution performed by the rotors on each keystroke is computed
+ *  once per set of positions (see Machine.keystrokeTables), after
+ *  which a decryption is three array loads a letter.  Restarts run
+ *  independently on every thread of a ForkJoinPool, each thread with
+ *  its own machine, until a budget of evaluations or of time is spent.
+ *  @author Dhruv Sirohi
+ */
+class CiphertextAttack {
+
+    /** Log-likelihoods of the n-grams of a language. */
+    static class Ngrams {
+
+        /** N-grams of LENGTH letters from an alphabet of SIZE, whose
+         *  log-likelihoods are SCORES, indexed by the n-gram's letters as
+         *  the digits of a base-SIZE number, first letter most
+         *  significant. */
+        private Ngrams(int length, int size, double[] scores) {
+            _length = length;
+            _size = size;
+            _scores = scores;
+        }
+
+        /** Return the n-grams described by INPUT, in which each line
+         *  holds an n-gram of letters of ALPHA and the number of times
+         *  it occurs in some sample of text.  All n-grams must be the
+         *  same length.  Those not listed are given a count of
+         *  UNSEEN_COUNT. */
+        static Ngrams read(BufferedReader input, Alphabet alpha)
+            throws IOException {
+            HashMap<String, Long> counts = new HashMap<String, Long>();
+            long total = 0;
+            int length = 0;
+            String line;
+            while ((line = input.readLine()) != null) {
+                String[] tokens = Main.tokenize(line);
+                if (tokens.length == 0) {
+                    continue;
+                }
+                int letters = tokens[0].codePointCount(0, tokens[0].length());
+                if (tokens.length != 2 || (length > 0 && letters != length)) {
+                    throw new EnigmaException("Bad n-gram line: " + line);
+                }
+                length = letters;
+                long count;
+                try {
+                    count = Long.parseLong(tokens[1]);
+                } catch (NumberFormatException excp) {
+                    throw new EnigmaException("Bad n-gram count: " + line);
+                }
+                if (count <= 0) {
+                    throw new EnigmaException("Bad n-gram count: " + line);
+                }
+                counts.merge(tokens[0], count, Long::sum);
+                total += count;
+            }
+            if (counts.isEmpty()) {
+                throw new EnigmaException("No n-grams.");
+            }
+            int size = alpha.size();
+            long entries = 1;
+            for (int i = 0; i < length; i++) {
+                entries *= size;
+                if (entries > MAX_NGRAM_TABLE) {
+                    throw new EnigmaException("N-grams too long.");
+                }
+            }
+            double[] scores = new double[(int) entries];
+            Arrays.fill(scores, Math.log(UNSEEN_COUNT / total));
+            for (String ngram : counts.keySet()) {
+                int index = 0;
+                for (int letter : alpha.toInts(ngram)) {
+                    index = index * size + letter;
+                }
+                scores[index] = Math.log((double) counts.get(ngram) / total);
+            }
+            return new Ngrams(length, size, scores);
+        }
+
+        /** Return the total log-likelihood of the n-grams in the first
+         *  LEN letters of TEXT (as indices in the alphabet). */
+        double score(int[] text, int len) {
+            int high = _scores.length / _size;
+            int index = 0;
+            double result = 0;
+            for (int i = 0; i < len; i++) {
+                index = (index % high) * _size + text[i];
+                if (i >= _length - 1) {
+                    result += _scores[index];
+                }
+            }
+            return result;
+        }
+
+        /** Number of letters per n-gram. */
+        private final int _length;
+        /** Size of the alphabet. */
+        private final int _size;
+        /** Log-likelihood of each n-gram. */
+        private final double[] _scores;
+    }
+
+    /** The best key found by an attack. */
+    static class Result {
+
+        /** A key inserting ROTORS (reflector first), with the window
+         *  letters SETTING and the plugboard PLUGBOARD (in cycle
+         *  notation), whose decryption scored SCORE. */
+        Result(String[] rotors, String setting, String plugboard,
+               double score) {
+            _rotors = rotors;
+            _setting = setting;
+            _plugboard = plugboard;
+            _score = score;
+        }
+
+        /** Return the rotors I insert, reflector first. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return my window letters at the start of the message. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my plugboard, in cycle notation. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Return the score of my decryption. */
+        double score() {
+            return _score;
+        }
+
+        /** Returns me as a setting line that Main accepts. */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("*");
+            for (String rotor : _rotors) {
+                result.append(' ').append(rotor);
+            }
+            result.append(' ').append(_setting);
+            if (!_plugboard.isEmpty()) {
+                result.append(' ').append(_plugboard);
+            }
+            return result.toString();
+        }
+
+        /** Rotors, reflector first. */
+        private final String[] _rotors;
+        /** Window letters at the start of the message. */
+        private final String _setting;
+        /** Plugboard, in cycle notation. */
+        private final String _plugboard;
+        /** Score of the decryption. */
+        private final double _score;
+    }
+
+    /** An attack on CIPHER, taken to have been enciphered by a machine
+     *  configured like MACHINE from its first letter.  Only the
+     *  available rotors of MACHINE are used, not its state.  Decryptions
+     *  are scored on a window of CIPHER from its first letter, as long
+     *  as keeps each thread's keystroke tables within MAX_TABLE_ENTRIES,
+     *  so that memory does not grow with the length of CIPHER; the key
+     *  found applies to all of it. */
+    CiphertextAttack(Machine machine, String cipher) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        int[] letters = _alphabet.toInts(cipher);
+        if (letters.length < 2) {
+            throw new EnigmaException("Ciphertext too short.");
+        }
+        _cipher = Arrays.copyOf(letters, (int) Math.min(letters.length,
+                MAX_TABLE_ENTRIES / _alphabet.size()));
+        if (_cipher.length < 2) {
+            throw new EnigmaException("Alphabet too large for attack.");
+        }
+        _orders = KeySearch.rotorOrders(machine);
+        if (_orders.isEmpty()) {
+            throw new EnigmaException("No rotor orders in configuration.");
+        }
+    }
+
+    /** Score plugboards by the log-likelihood of NGRAMS, or by index of
+     *  coincidence if NGRAMS is null. */
+    void setNgrams(Ngrams ngrams) {
+        _ngrams = ngrams;
+    }
+
+    /** Stop after EVALUATIONS scorings of a decryption or MILLIS
+     *  milliseconds, whichever comes first, where 0 means no limit.
+     *  At least one must be positive. */
+    void setBudget(long evaluations, long millis) {
+        if (evaluations <= 0 && millis <= 0) {
+            throw new EnigmaException("Attack needs a budget.");
+        }
+        _maxEvaluations = evaluations;
+        _maxMillis = millis;
+    }
+
+    /** Use plugboards of at most PAIRS pairs. */
+    void setMaxPairs(int pairs) {
+        _maxPairs = pairs;
+    }
+
+    /** Seed the random choices of the restarts with SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Run restarts on every thread of POOL until the budget is spent,
+     *  and return the best key found. */
+    Result run(ForkJoinPool pool) {
+        _deadline = System.nanoTime() + _maxMillis * NANOS_PER_MILLI;
+        _evaluations.set(0);
+        _restarts.set(0);
+        _best = null;
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                Climber[] climbers = new Climber[pool.getParallelism()];
+                for (int i = 0; i < climbers.length; i++) {
+                    climbers[i] = new Climber(_seed + i);
+                }
+                invokeAll(climbers);
+            }
+        });
+        return _best;
+    }
+
+    /** Return the number of letters of the ciphertext, from its first,
+     *  on which decryptions are scored. */
+    int scoredLength() {
+        return _cipher.length;
+    }
+
+    /** Return the number of decryptions scored by the last run. */
+    long evaluations() {
+        return _evaluations.get();
+    }
+
+    /** Return the number of restarts made by the last run. */
+    long restarts() {
+        return _restarts.get();
+    }
+
+    /** Return true iff the budget is spent. */
+    private boolean spent() {
+        return (_maxEvaluations > 0 && _evaluations.get() >= _maxEvaluations)
+            || (_maxMillis > 0 && System.nanoTime() >= _deadline);
+    }
+
+    /** Replace the best key with CANDIDATE if it scored higher. */
+    private synchronized void offer(Result candidate) {
+        if (_best == null || candidate.score() > _best.score()) {
+            _best = candidate;
+        }
+    }
+
+    /** A thread's worth of restarts. */
+    private class Climber extends RecursiveAction {
+
+        /** A climber whose random choices are seeded with SEED. */
+        Climber(long seed) {
+            _random = new Random(seed);
+            _m = new Machine(_alphabet, _machine.numRotors(),
+                             _machine.numPawls(), _machine.registry());
+            _m.setPlugboard(new Permutation("", _alphabet));
+            int size = _alphabet.size();
+            _pos = new int[_machine.numRotors() - 1];
+            _plug = new int[size];
+            _saved = new int[size];
+            _counts = new int[size];
+            _text = new int[_cipher.length];
+            _tables = new int[_cipher.length][size];
+        }
+
+        @Override
+        protected void compute() {
+            while (!spent()) {
+                restart();
+            }
+        }
+
+        /** Climb from a random rotor order and positions and an empty
+         *  plugboard, and offer the result. */
+        private void restart() {
+            _restarts.incrementAndGet();
+            int size = _alphabet.size();
+            String[] order = _orders.get(_random.nextInt(_orders.size()));
+            _m.insertRotors(order);
+            for (int i = 0; i < _pos.length; i++) {
+                _pos[i] = _random.nextInt(size);
+            }
+            for (int c = 0; c < size; c++) {
+                _plug[c] = c;
+            }
+            _pairs = 0;
+            double best = Double.NEGATIVE_INFINITY;
+            while (!spent()) {
+                climbPositions();
+                double score = climbPlugboard();
+                if (score <= best) {
+                    break;
+                }
+                best = score;
+            }
+            if (best > Double.NEGATIVE_INFINITY) {
+                offer(result(order, best));
+            }
+        }
+
+        /** Set _pos, one rotor at a time, to the positions giving the
+         *  decryption with the highest index of coincidence under _plug,
+         *  until no single rotor's position improves it. */
+        private void climbPositions() {
+            double best = coincidence(decrypt());
+            boolean improved = true;
+            while (improved && !spent()) {
+                improved = false;
+                for (int slot = 0; slot < _pos.length; slot++) {
+                    int keep = _pos[slot];
+                    for (int p = 0; p < _alphabet.size(); p++) {
+                        if (p == keep) {
+                            continue;
+                        }
+                        _pos[slot] = p;
+                        double score = coincidence(decrypt());
+                        if (score > best) {
+                            best = score;
+                            keep = p;
+                            improved = true;
+                        }
+                    }
+                    _pos[slot] = keep;
+                }
+            }
+        }
+
+        /** Improve _plug one pair at a time, while some change of a
+         *  pair improves the score of the decryption at _pos, and return
+         *  the final score. */
+        private double climbPlugboard() {
+            _m.setRotors(_pos);
+            _m.keystrokeTables(_tables);
+            double best = score(applyPlugboard());
+            int size = _alphabet.size();
+            boolean improved = true;
+            while (improved && !spent()) {
+                improved = false;
+                for (int a = 0; a < size; a++) {
+                    for (int b = a + 1; b < size; b++) {
+                        System.arraycopy(_plug, 0, _saved, 0, size);
+                        int savedPairs = _pairs;
+                        if (_plug[a] == b) {
+                            unplug(a);
+                        } else {
+                            unplug(a);
+                            unplug(b);
+                            if (_pairs >= _maxPairs) {
+                                System.arraycopy(_saved, 0, _plug, 0, size);
+                                _pairs = savedPairs;
+                                continue;
+                            }
+                            _plug[a] = b;
+                            _plug[b] = a;
+                            _pairs += 1;
+                        }
+                        double score = score(applyPlugboard());
+                        if (score > best) {
+                            best = score;
+                            improved = true;
+                        } else {
+                            System.arraycopy(_saved, 0, _plug, 0, size);
+                            _pairs = savedPairs;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        /** Remove C's pair, if it has one, from _plug. */
+        private void unplug(int c) {
+            int partner = _plug[c];
+            if (partner != c) {
+                _plug[partner] = partner;
+                _plug[c] = c;
+                _pairs -= 1;
+            }
+        }
+
+        /** Return the decryption of the ciphertext by _m at _pos with
+         *  plugboard _plug, stepping the machine. */
+        private int[] decrypt() {
+            _m.setRotors(_pos);
+            for (int i = 0; i < _cipher.length; i++) {
+                _text[i] = _plug[_m.convert(_plug[_cipher[i]])];
+            }
+            return _text;
+        }
+
+        /** Return the decryption of the ciphertext with plugboard _plug
+         *  and the rotor substitutions in _tables. */
+        private int[] applyPlugboard() {
+            for (int i = 0; i < _cipher.length; i++) {
+                _text[i] = _plug[_tables[i][_plug[_cipher[i]]]];
+            }
+            return _text;
+        }
+
+        /** Return the score of TEXT, a decryption of the ciphertext. */
+        private double score(int[] text) {
+            if (_ngrams == null) {
+                return coincidence(text);
+            }
+            _evaluations.incrementAndGet();
+            return _ngrams.score(text, text.length);
+        }
+
+        /** Return the index of coincidence of TEXT, a decryption of the
+         *  ciphertext. */
+        private double coincidence(int[] text) {
+            _evaluations.incrementAndGet();
+            Arrays.fill(_counts, 0);
+            for (int c : text) {
+                _counts[c] += 1;
+            }
+            long sum = 0;
+            for (int count : _counts) {
+                sum += (long) count * (count - 1);
+            }
+            return (double) sum / ((long) text.length * (text.length - 1));
+        }
+
+        /** Return the key given by ORDER, _pos and _plug, which scored
+         *  SCORE. */
+        private Result result(String[] order, double score) {
+            StringBuilder setting = new StringBuilder();
+            for (int p : _pos) {
+                setting.appendCodePoint(_alphabet.codePoint(p));
+            }
+            StringBuilder plugboard = new StringBuilder();
+            for (int c = 0; c < _plug.length; c++) {
+                if (_plug[c] > c) {
+                    if (plugboard.length() > 0) {
+                        plugboard.append(' ');
+                    }
+                    plugboard.append('(')
+                        .appendCodePoint(_alphabet.codePoint(c))
+                        .appendCodePoint(_alphabet.codePoint(_plug[c]))
+                        .append(')');
+                }
+            }
+            return new Result(order.clone(), setting.toString(),
+                              plugboard.toString(), score);
+        }
+
+        /** Source of my random choices. */
+        private final Random _random;
+        /** My machine, with an empty plugboard. */
+        private final Machine _m;
+        /** Current rotor positions, leftmost first. */
+        private final int[] _pos;
+        /** Current plugboard, as an involution on indices, and a copy of
+         *  it saved before a change. */
+        private final int[] _plug, _saved;
+        /** Number of pairs in _plug. */
+        private int _pairs;
+        /** Letter counts for coincidence. */
+        private final int[] _counts;
+        /** The latest decryption. */
+        private final int[] _text;
+        /** Substitution by the rotors on each keystroke at _pos. */
+        private final int[][] _tables;
+    }
+
+    /** Count given to n-grams absent from an n-gram file. */
+    static final double UNSEEN_COUNT = 0.01;
+
+    /** Most entries in an n-gram table. */
+    private static final long MAX_NGRAM_TABLE = 1 << 24;
+
+    /** Most entries in the keystroke tables of each thread: the letters
+     *  scored times the size of the alphabet. */
+    static final long MAX_TABLE_ENTRIES = 1 << 20;
+
+    /** Evaluations allowed when no budget is set. */
+    static final long DEFAULT_EVALUATIONS = 1000000;
+
+    /** Most plugboard pairs tried by default, as on the service
+     *  machines. */
+    static final int DEFAULT_MAX_PAIRS = 10;
+
+    /** Nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+    /** Supplies the available rotors and the shape of the machines. */
+    private final Machine _machine;
+
+    /** Common alphabet of the rotors. */
+    private final Alphabet _alphabet;
+
+    /** The window of the ciphertext scored, as indices in _alphabet. */
+    private final int[] _cipher;
+
+    /** Every rotor order, reflector first. */
+    private final List<String[]> _orders;
+
+    /** N-grams scoring plugboards, or null to use coincidence. */
+    private Ngrams _ngrams;
+
+    /** Evaluation and time limits; 0 for none. */
+    private long _maxEvaluations = DEFAULT_EVALUATIONS, _maxMillis;
+
+    /** Most plugboard pairs. */
+    private int _maxPairs = DEFAULT_MAX_PAIRS;
+
+    /** Seed of the first climber's random choices. */
+    private long _seed;
+
+    /** When the current run must stop, by System.nanoTime. */
+    private long _deadline;
+
+    /** Decryptions scored and restarts made by the current run. */
+    private final AtomicLong _evaluations = new AtomicLong(),
+        _restarts = new AtomicLong();
+
+    /** Best key found by the current run, or null. */
+    private Result _best;
+}
@@ -0,0 +1,115 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CiphertextAttack class.
+ *  @author Dhruv Sirohi
+ */
+public class CiphertextAttackTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Plaintext of the message attacked. */
+    private static final String PLAIN =
+        ("Set my rotor slots to the rotors named from my set of available "
+         + "rotors the first of which names the reflector Initially all "
+         + "rotors are set at their zero setting Returns the result of "
+         + "converting the input character after first advancing the "
+         + "machine In compiled mode this is one table lookup Advances the "
+         + "rotors for one keystroke The rightmost rotor always advances if "
+         + "a pawl rotor's right neighbor is at a notch that rotor and every "
+         + "rotor to its right advance as well Notches are all read before "
+         + "anything moves Returns the encoding or decoding of the message "
+         + "updating the state of the rotors accordingly")
+        .toUpperCase().replaceAll("[^A-Z]", "");
+
+    /** Return a 3-rotor, 2-pawl machine holding reflector B and naval
+     *  rotors I and II, so that only the positions and plugboard are
+     *  unknown. */
+    static Machine twoRotorMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        rotors.add(new MovingRotor("I",
+                new Permutation(NAVALA.get("I"), UPPER), "Q"));
+        rotors.add(new MovingRotor("II",
+                new Permutation(NAVALA.get("II"), UPPER), "E"));
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkNgrams() throws IOException {
+        CiphertextAttack.Ngrams ngrams = CiphertextAttack.Ngrams.read(
+                new BufferedReader(new StringReader("AB 3\n\nBA 1\n")),
+                UPPER);
+        int[] text = { 0, 1, 0, 2 };
+        double expected = Math.log(0.75) + Math.log(0.25)
+            + Math.log(CiphertextAttack.UNSEEN_COUNT / 4);
+        assertEquals("Wrong n-gram score", expected, ngrams.score(text, 4),
+                     1e-9);
+        assertEquals("Wrong prefix score", Math.log(0.75),
+                     ngrams.score(text, 2), 1e-9);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRaggedNgrams() throws IOException {
+        CiphertextAttack.Ngrams.read(
+                new BufferedReader(new StringReader("AB 3\nABC 1\n")), UPPER);
+    }
+
+    @Test
+    public void checkRecoversKey() {
+        Machine m = twoRotorMachine();
+        m.insertRotors(new String[] { "B", "II", "I" });
+        m.setRotors("KD");
+        m.setPlugboard(new Permutation("(AT) (ER) (NO)", UPPER));
+        String cipher = m.convert(PLAIN);
+        CiphertextAttack attack =
+            new CiphertextAttack(twoRotorMachine(), cipher);
+        attack.setBudget(200000, 0);
+        attack.setMaxPairs(3);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        CiphertextAttack.Result best = attack.run(pool);
+        pool.shutdown();
+        assertTrue("Budget ignored", attack.evaluations() < 210000);
+        Machine check = twoRotorMachine();
+        check.insertRotors(best.rotors());
+        check.setRotors(best.setting());
+        check.setPlugboard(new Permutation(best.plugboard(), UPPER));
+        assertEquals(msg("attack", "key %s", best), PLAIN,
+                     check.convert(cipher));
+    }
+
+    @Test
+    public void checkScoresWindow() {
+        StringBuilder cipher = new StringBuilder();
+        while (cipher.length() <= CiphertextAttack.MAX_TABLE_ENTRIES) {
+            cipher.append(PLAIN);
+        }
+        CiphertextAttack attack =
+            new CiphertextAttack(twoRotorMachine(), cipher.toString());
+        assertEquals("Wrong window",
+                     CiphertextAttack.MAX_TABLE_ENTRIES / UPPER.size(),
+                     attack.scoredLength());
+        assertEquals("Short ciphertext not scored whole", PLAIN.length(),
+                     new CiphertextAttack(twoRotorMachine(), PLAIN)
+                     .scoredLength());
+    }
+
+}
@@ -0,0 +1,127 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+import static enigma.EnigmaException.*;
+
+/** Client for an Enigma server started with Main's --serve option.
+ *  @author Dhruv Sirohi
+ */
+public final class Client {
+
+    /** Send the lines of an input file to the server at ARGS[0], and
+     *  write its answers as Main would write its output, where
+     *  1 <= ARGS.length <= 3.  ARGS[0] is an address as for --serve.
+     *  ARGS[1] is optional; when present, it names the input file.
+     *  Otherwise, input comes from the standard input.  ARGS[2] is
+     *  optional; when present, it names the output file.  Otherwise,
+     *  output goes to the standard output.  Each message line is sent
+     *  and answered in turn, and the rate of these requests and their
+     *  median and 99th-percentile round-trip latencies go to the
+     *  standard error at the end.  Exits normally if the server reports
+     *  no errors; otherwise with code 1. */
+    public static void main(String... args) throws IOException {
+        try {
+            new Client(args).process();
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Check ARGS and open the necessary files (see comment on main). */
+    Client(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            throw error("Only 1, 2, or 3 command-line arguments allowed");
+        }
+        _address = Main.address(args[0]);
+        try {
+            _input = new BufferedReader(new InputStreamReader(
+                    args.length > 1 ? new FileInputStream(args[1])
+                    : System.in));
+            _output = args.length > 2
+                ? new PrintStream(new FileOutputStream(args[2])) : System.out;
+        } catch (IOException excp) {
+            throw error("could not open %s", excp.getMessage());
+        }
+    }
+
+    /** Send _input to the server at _address, a line at a time, and copy
+     *  its answers to _output. */
+    void process() throws IOException {
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(
+                    _address instanceof UnixDomainSocketAddress
+                    ? StandardProtocolFamily.UNIX
+                    : StandardProtocolFamily.INET);
+            channel.connect(_address);
+        } catch (IOException excp) {
+            throw error("could not connect to %s", _address);
+        }
+        Latencies latencies = new Latencies();
+        long begin = System.nanoTime();
+        try {
+            Writer request = new BufferedWriter(new OutputStreamWriter(
+                    Channels.newOutputStream(channel)));
+            BufferedReader response = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(channel)));
+            long start = -1;
+            String line;
+            while ((line = _input.readLine()) != null) {
+                if (start < 0) {
+                    start = System.nanoTime();
+                }
+                request.write(line);
+                request.write('\n');
+                if (Main.isSettingLine(line)) {
+                    continue;
+                }
+                request.flush();
+                String answer = response.readLine();
+                if (answer == null) {
+                    throw error("server closed the connection");
+                } else if (answer.startsWith("*")) {
+                    throw error("%s", answer.replaceFirst("^\\* Error: ",
+                                                          ""));
+                }
+                latencies.record(System.nanoTime() - start);
+                start = -1;
+                _output.println(answer);
+            }
+            request.flush();
+            channel.shutdownOutput();
+            String answer = response.readLine();
+            if (answer != null && answer.startsWith("*")) {
+                throw error("%s", answer.replaceFirst("^\\* Error: ", ""));
+            }
+        } finally {
+            channel.close();
+            _output.flush();
+            System.err.println(latencies.summary(System.nanoTime() - begin));
+        }
+    }
+
+    /** Address of the server. */
+    private final SocketAddress _address;
+
+    /** Source of input lines. */
+    private final BufferedReader _input;
+
+    /** File for the server's answers. */
+    private final PrintStream _output;
+}
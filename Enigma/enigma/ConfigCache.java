@@ -0,0 +1,298 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/** A compiled form of a configuration file, stored beside it under the
+ *  same name with CACHE_SUFFIX added.  It holds the alphabet, the
+ *  numbers of rotors and pawls, and each available rotor's kind, name,
+ *  permutation table and notches, so that a machine can be rebuilt
+ *  without parsing cycles or matching the file against patterns.  Only
+ *  the names and kinds are decoded when the cache is read; each rotor's
+ *  table is turned into a rotor when a setting line first names it, as
+ *  Main.readConfig leaves its rotors, so that a large catalog costs
+ *  little more than its names.  A rotor whose definition does not
+ *  compile is stored as that definition, so that it is an error only
+ *  if it is used, as it would be without the cache.  The cache is keyed
+ *  by a CRC-32C hash of the configuration file's contents, and also
+ *  holds those contents, so that it is ignored (and rewritten) whenever
+ *  they change, however unlikely a matching hash.  (A cryptographic
+ *  digest would cost more startup time, loading the security
+ *  providers, than the whole cache saves.)  It is read as a plain byte
+ *  array for the same reason.
+ *  @author Dhruv Sirohi
+ */
+class ConfigCache {
+
+    /** Suffix added to the name of a configuration file to give the name
+     *  of its cache. */
+    static final String CACHE_SUFFIX = ".cache";
+
+    /** A cache for the configuration file CONFIG, which is read at once
+     *  to find its hash. */
+    ConfigCache(File config) throws IOException {
+        _cache = new File(config.getPath() + CACHE_SUFFIX);
+        _contents = readAll(config);
+        _hash = hash(_contents, _contents.length);
+    }
+
+    /** Return the contents of FILE. */
+    private static byte[] readAll(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /** Return the CRC-32C hash of the first LENGTH bytes of BYTES. */
+    private static int hash(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /** Return the path of my cache file. */
+    Path path() {
+        return _cache.toPath();
+    }
+
+    /** Return a machine built from my cache file, or null if there is
+     *  none, or it was made from other contents of the configuration
+     *  file, by another version of this format, or is damaged (its last
+     *  four bytes are a hash of the rest). */
+    Machine read() {
+        byte[] bytes;
+        try {
+            bytes = readAll(_cache);
+        } catch (IOException excp) {
+            return null;
+        }
+        int length = bytes.length - Integer.BYTES;
+        if (length < 0 || hash(bytes, length) != ByteBuffer.wrap(bytes)
+                .getInt(length)) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes, 0, length);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                    || in.getInt() != _hash) {
+                return null;
+            }
+            int contents = count(in);
+            if (!Arrays.equals(bytes, in.position(), in.position() + contents,
+                               _contents, 0, _contents.length)) {
+                return null;
+            }
+            in.position(in.position() + contents);
+            int[] codePoints = new int[count(in)];
+            for (int i = 0; i < codePoints.length; i++) {
+                codePoints[i] = in.getInt();
+            }
+            Alphabet alpha = new Alphabet(new String(codePoints, 0,
+                                                     codePoints.length));
+            int numRotors = in.getInt(), pawls = in.getInt();
+            int n = count(in);
+            List<String> names = new ArrayList<>(n);
+            byte[] kinds = new byte[n];
+            int[] records = new int[n];
+            for (int id = 0; id < n; id++) {
+                kinds[id] = in.get();
+                if (kinds[id] != RotorRegistry.REFLECTOR
+                        && kinds[id] != RotorRegistry.FIXED
+                        && kinds[id] != RotorRegistry.MOVING) {
+                    return null;
+                }
+                names.add(string(in));
+                records[id] = in.position();
+                in.position(in.position() + Integer.BYTES + count(in));
+            }
+            if (in.hasRemaining() || numRotors <= 1 || pawls < 0
+                    || pawls >= numRotors || n < numRotors) {
+                return null;
+            }
+            return new Machine(alpha, numRotors, pawls, new RotorRegistry(
+                    names, kinds, id -> rotor(bytes, records[id],
+                                              names.get(id), kinds[id],
+                                              alpha)));
+        } catch (BufferUnderflowException | IllegalArgumentException
+                 | EnigmaException excp) {
+            return null;
+        }
+    }
+
+    /** Return the next count from IN, which must be no more than the
+     *  bytes IN has left. */
+    private static int count(ByteBuffer in) {
+        int result = in.getInt();
+        if (result < 0 || result > in.remaining()) {
+            throw new IllegalArgumentException("bad count");
+        }
+        return result;
+    }
+
+    /** Return the next string from IN, stored as a count of bytes of
+     *  UTF-8 followed by those bytes. */
+    private static String string(ByteBuffer in) {
+        int length = count(in);
+        String result = new String(in.array(), in.position(), length,
+                                   StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return result;
+    }
+
+    /** Return the rotor named NAME of kind KIND over ALPHA whose record
+     *  starts at index START of BYTES, the whole cache.  A record is its
+     *  length, and then a form byte: COMPILED, followed by the
+     *  permutation table and, for a moving rotor, its notches; or
+     *  DEFINITION, followed by the rotor's definition, compiled as
+     *  Main.readConfig would. */
+    private static Rotor rotor(byte[] bytes, int start, String name,
+                               byte kind, Alphabet alpha) {
+        ByteBuffer in = ByteBuffer.wrap(bytes, start, bytes.length - start);
+        try {
+            in.limit(start + Integer.BYTES + count(in));
+            if (in.get() == DEFINITION) {
+                return Main.readRotor(string(in), alpha);
+            }
+            int[] forward = new int[alpha.size()];
+            for (int i = 0; i < forward.length; i++) {
+                forward[i] = in.getInt();
+            }
+            Permutation perm = new Permutation(forward, alpha);
+            if (kind == RotorRegistry.MOVING) {
+                return new MovingRotor(name, perm, string(in));
+            } else if (kind == RotorRegistry.FIXED) {
+                return new FixedRotor(name, perm);
+            } else {
+                return new Reflector(name, perm);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException excp) {
+            throw new EnigmaException("damaged configuration cache");
+        }
+    }
+
+    /** Store MACHINE, which must have been configured from the current
+     *  contents of my configuration file, in my cache file.  Each rotor
+     *  is compiled afresh to do so, leaving MACHINE's own uncompiled.
+     *  The file is written whole under a temporary name and then
+     *  renamed, so that concurrent runs see either the old cache or the
+     *  new one.  Failure (in a read-only directory, say) leaves the
+     *  cache as it was. */
+    void write(Machine machine) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Path temp = null;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_hash);
+            out.writeInt(_contents.length);
+            out.write(_contents);
+            Alphabet alpha = machine.alphabet();
+            out.writeInt(alpha.size());
+            for (int i = 0; i < alpha.size(); i++) {
+                out.writeInt(alpha.codePoint(i));
+            }
+            out.writeInt(machine.numRotors());
+            out.writeInt(machine.numPawls());
+            RotorRegistry registry = machine.registry();
+            out.writeInt(registry.size());
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            for (int id = 0; id < registry.size(); id++) {
+                out.writeByte(registry.kind(id));
+                writeString(out, registry.name(id));
+                record.reset();
+                writeRecord(new DataOutputStream(record), registry, id,
+                            alpha);
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+            out.flush();
+            out.writeInt(hash(bytes.toByteArray(), bytes.size()));
+            Path cache = path();
+            Path dir = cache.toAbsolutePath().getParent();
+            temp = Files.createTempFile(dir, cache.getFileName().toString(),
+                                        ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    /* Leave it. */
+                }
+            }
+        }
+    }
+
+    /** Write to OUT the record (see rotor) of the rotor over ALPHA whose
+     *  id in REGISTRY is ID. */
+    private static void writeRecord(DataOutputStream out,
+                                    RotorRegistry registry, int id,
+                                    Alphabet alpha) throws IOException {
+        String definition = registry.definition(id);
+        Rotor rotor;
+        if (definition == null) {
+            rotor = registry.rotor(id);
+        } else {
+            try {
+                rotor = Main.readRotor(definition, alpha);
+            } catch (EnigmaException excp) {
+                rotor = null;
+            }
+        }
+        if (rotor == null || RotorRegistry.kindOf(rotor) != registry.kind(id)
+                || !rotor.name().equals(registry.name(id))) {
+            out.writeByte(DEFINITION);
+            writeString(out, definition);
+            return;
+        }
+        out.writeByte(COMPILED);
+        for (int c : rotor.permutation().forwardTable()) {
+            out.writeInt(c);
+        }
+        if (rotor instanceof MovingRotor) {
+            writeString(out, ((MovingRotor) rotor).notches());
+        }
+    }
+
+    /** Write S to OUT as string reads it. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** First word of every cache file. */
+    private static final int MAGIC = 0x454e4947;
+
+    /** Version of the format, changed whenever it is. */
+    private static final int VERSION = 3;
+
+    /** Forms of a rotor's record. */
+    private static final byte COMPILED = 0, DEFINITION = 1;
+
+    /** My cache file. */
+    private final File _cache;
+
+    /** Contents of the configuration file. */
+    private final byte[] _contents;
+
+    /** CRC-32C hash of _contents. */
+    private final int _hash;
+}
@@ -0,0 +1,162 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** The suite of all JUnit tests for the ConfigCache class.
+ *  @author Dhruv Sirohi
+ */
+public class ConfigCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Directory holding the end-to-end cases that must succeed. */
+    private static final File CORRECT = new File("../testing/correct");
+
+    /** Return a copy of CORRECT's configuration in a new temporary
+     *  directory, which is deleted on exit, as is everything put in it
+     *  by the tests. */
+    private static File configCopy() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        dir.toFile().deleteOnExit();
+        File result = dir.resolve("default.conf").toFile();
+        Files.copy(new File(CORRECT, "default.conf").toPath(),
+                   result.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        result.deleteOnExit();
+        new File(result + ConfigCache.CACHE_SUFFIX).deleteOnExit();
+        return result;
+    }
+
+    /** Failure messages for the runs of Main in checkMain: without the
+     *  cache, writing it, and reading it. */
+    private static final String[] RUNS = {
+        "Output differs", "Output differs while writing the cache",
+        "Output differs with the cache",
+    };
+
+    /** Return the result of converting a fixed message with M, set up as
+     *  the first message of CORRECT/riptide.in. */
+    private static String convert(Machine m) {
+        m.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        m.stellungSet("");
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                       m.alphabet()));
+        return m.convert("FROMHISSHOULDERHIAWATHA");
+    }
+
+    /** Return the machine configured from the file CONFIG by parsing
+     *  it. */
+    private static Machine parsed(File config) {
+        return new Main(new String[] { config.getPath() }).readConfig();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRoundTrip() throws IOException {
+        File config = configCopy();
+        ConfigCache cache = new ConfigCache(config);
+        assertNull("Read a missing cache", cache.read());
+        Machine m = parsed(config);
+        cache.write(m);
+        Machine cached = new ConfigCache(config).read();
+        assertNotNull("Did not read a fresh cache", cached);
+        assertEquals("Wrong number of rotors", m.numRotors(),
+                     cached.numRotors());
+        assertEquals("Wrong number of pawls", m.numPawls(),
+                     cached.numPawls());
+        assertEquals("Wrong available rotors",
+                     m.availableRotors().toString(),
+                     cached.availableRotors().toString());
+        assertEquals("Cached machine converts differently", convert(m),
+                     convert(cached));
+    }
+
+    @Test
+    public void checkUnusedBadRotors() throws IOException {
+        File config = configCopy();
+        Files.write(config.toPath(), " Bad M (AB) (A1)\n BadR R (AB)\n"
+                    .getBytes(), StandardOpenOption.APPEND);
+        Machine m = parsed(config);
+        new ConfigCache(config).write(m);
+        assertEquals("Compiled rotors to write the cache", 0,
+                     m.registry().compiled());
+        Machine cached = new ConfigCache(config).read();
+        assertNotNull("Did not read a fresh cache", cached);
+        assertEquals("Compiled rotors to read the cache", 0,
+                     cached.registry().compiled());
+        assertEquals("Cached machine converts differently", convert(m),
+                     convert(cached));
+        try {
+            cached.insertRotors(new String[] { "B", "Beta", "III", "IV",
+                                               "Bad" });
+            fail("Used a bad rotor");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void checkStale() throws IOException {
+        File config = configCopy();
+        new ConfigCache(config).write(parsed(config));
+        Files.write(config.toPath(), "\n".getBytes(),
+                    StandardOpenOption.APPEND);
+        assertNull("Read a cache of other contents",
+                   new ConfigCache(config).read());
+    }
+
+    @Test
+    public void checkDamaged() throws IOException {
+        File config = configCopy();
+        ConfigCache cache = new ConfigCache(config);
+        cache.write(parsed(config));
+        byte[] bytes = Files.readAllBytes(cache.path());
+        Files.write(cache.path(), Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull("Read a truncated cache", cache.read());
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(cache.path(), bytes);
+        assertNull("Read a corrupted cache", cache.read());
+    }
+
+    @Test
+    public void checkMain() throws IOException {
+        File config = configCopy();
+        File input = new File(CORRECT, "riptide.in");
+        String expected = null;
+        for (int run = 0; run < RUNS.length; run += 1) {
+            File output = File.createTempFile("enigma", ".out");
+            output.deleteOnExit();
+            String[] args = { config.getPath(), input.getPath(),
+                              output.getPath() };
+            if (run > 0) {
+                args = Arrays.copyOf(args, args.length + 1);
+                args[args.length - 1] = "--cache";
+            }
+            Main.main(args);
+            String result = new String(Files.readAllBytes(output.toPath()));
+            if (expected == null) {
+                expected = result;
+            }
+            assertEquals(RUNS[run], expected, result);
+            assertEquals("Cache not written", run > 0,
+                         new ConfigCache(config).read() != null);
+        }
+    }
+
+}
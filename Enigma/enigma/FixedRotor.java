@@ -13,4 +13,9 @@ class FixedRotor extends Rotor {
         super(name, perm);
         _setting = 0;
     }
+
+    @Override
+    Rotor copy() {
+        return copyStateTo(new FixedRotor(name(), permutation()));
+    }
 }
@@ -0,0 +1,113 @@
+package enigma;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/** Writes converted messages in groups of five letters, one message to
+ *  a line.  Each group is followed by a blank, and so is the last,
+ *  shorter group (which is empty when the message length is a multiple
+ *  of five).  Lines are formatted into a buffer that is reused, and
+ *  written out a block at a time, so that the Writer underneath sees few
+ *  calls however short the messages.
+ *  @author Dhruv Sirohi
+ */
+class GroupWriter implements Flushable {
+
+    /** A GroupWriter writing to OUT through a buffer of the default
+     *  size. */
+    GroupWriter(Writer out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /** A GroupWriter writing to OUT through a buffer of SIZE chars,
+     *  which must be at least GROUP_ROOM. */
+    GroupWriter(Writer out, int size) {
+        if (size < GROUP_ROOM) {
+            throw new IllegalArgumentException("buffer too small");
+        }
+        _out = out;
+        _buffer = new char[size];
+    }
+
+    /** Write the LENGTH chars of MSG starting at START as a line of
+     *  groups.  The chars must all be in the Basic Multilingual Plane. */
+    void writeLine(char[] msg, int start, int length) throws IOException {
+        int end = start + length;
+        for (int p = start; p < end; p += GROUP) {
+            if (_length + GROUP_ROOM > _buffer.length) {
+                drain();
+            }
+            int n = Math.min(GROUP, end - p);
+            System.arraycopy(msg, p, _buffer, _length, n);
+            _length += n;
+            if (n == GROUP) {
+                _buffer[_length++] = ' ';
+            } else {
+                endLine();
+                return;
+            }
+        }
+        if (_length + GROUP_ROOM > _buffer.length) {
+            drain();
+        }
+        endLine();
+    }
+
+    /** Write the first LENGTH code points of CODEPOINTS as a line of
+     *  groups. */
+    void writeLine(int[] codePoints, int length) throws IOException {
+        for (int p = 0; p <= length; p += GROUP) {
+            if (_length + GROUP_ROOM > _buffer.length) {
+                drain();
+            }
+            for (int i = p; i < Math.min(p + GROUP, length); i++) {
+                _length += Character.toChars(codePoints[i], _buffer,
+                                             _length);
+            }
+            _buffer[_length++] = ' ';
+        }
+        _buffer[_length++] = '\n';
+    }
+
+    /** Finish the current line, whose last group (of fewer than five
+     *  letters) is already in _buffer. */
+    private void endLine() {
+        _buffer[_length++] = ' ';
+        _buffer[_length++] = '\n';
+    }
+
+    /** Write everything in _buffer to the Writer underneath. */
+    private void drain() throws IOException {
+        _out.write(_buffer, 0, _length);
+        _length = 0;
+    }
+
+    /** Write out all the lines given so far, and flush the Writer
+     *  underneath. */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        _out.flush();
+    }
+
+    /** Letters in a group. */
+    static final int GROUP = 5;
+
+    /** Most chars a single group can add to the buffer: five
+     *  supplementary characters of two chars each, a blank, and possibly
+     *  the last blank and newline of its line. */
+    static final int GROUP_ROOM = 2 * GROUP + 3;
+
+    /** Default size of the buffer, in chars. */
+    static final int DEFAULT_BUFFER_SIZE = 1 << 13;
+
+    /** Where my lines go. */
+    private final Writer _out;
+
+    /** Lines not yet written to _out. */
+    private final char[] _buffer;
+
+    /** Number of chars in _buffer. */
+    private int _length;
+}
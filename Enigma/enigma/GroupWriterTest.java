@@ -0,0 +1,94 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the GroupWriter class.
+ *  @author Dhruv Sirohi
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return MSG in groups of five as Main has always printed it: each
+     *  group followed by a blank, including a last group of fewer than
+     *  five letters, which is empty if need be. */
+    private static String grouped(String msg) {
+        StringBuilder result = new StringBuilder();
+        int[] codePoints = msg.codePoints().toArray();
+        for (int i = 0; i <= codePoints.length; i += 5) {
+            for (int j = i; j < Math.min(i + 5, codePoints.length); j++) {
+                result.appendCodePoint(codePoints[j]);
+            }
+            result.append(' ');
+        }
+        return result.append('\n').toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkLines() throws IOException {
+        StringWriter text = new StringWriter();
+        GroupWriter out = new GroupWriter(text);
+        StringBuilder expected = new StringBuilder();
+        for (int length = 0; length <= 12; length += 1) {
+            String msg = UPPER_STRING.substring(0, length);
+            out.writeLine(("**" + msg).toCharArray(), 2, length);
+            expected.append(grouped(msg));
+        }
+        assertEquals("Written before flush", "", text.toString());
+        out.flush();
+        assertEquals("Wrong groups", expected.toString(), text.toString());
+        assertEquals("Wrong groups of five", "ABCDE  \n",
+                     text.toString().split("(?<=\\n)")[5]);
+    }
+
+    @Test
+    public void checkSmallBuffer() throws IOException {
+        String msg = UPPER_STRING.repeat(7);
+        for (int size = GroupWriter.GROUP_ROOM; size < 40; size += 1) {
+            StringWriter text = new StringWriter();
+            GroupWriter out = new GroupWriter(text, size);
+            StringBuilder expected = new StringBuilder();
+            for (int i = 0; i < 3; i += 1) {
+                out.writeLine(msg.toCharArray(), 0, msg.length() - i);
+                expected.append(grouped(msg.substring(0, msg.length() - i)));
+            }
+            out.flush();
+            assertEquals(msg("small buffer", "size %d", size),
+                         expected.toString(), text.toString());
+        }
+    }
+
+    @Test
+    public void checkCodePoints() throws IOException {
+        String msg = "A\ud83d\ude00\u4e2dB\ud83d\ude01C\ud83d\ude02";
+        int[] codePoints = msg.codePoints().toArray();
+        StringWriter text = new StringWriter();
+        GroupWriter out = new GroupWriter(text, GroupWriter.GROUP_ROOM);
+        for (int i = 0; i < 3; i += 1) {
+            out.writeLine(codePoints, codePoints.length);
+        }
+        out.flush();
+        assertEquals("Wrong code point groups", grouped(msg).repeat(3),
+                     text.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkTinyBuffer() {
+        new GroupWriter(new StringWriter(), GroupWriter.GROUP_ROOM - 1);
+    }
+
+}
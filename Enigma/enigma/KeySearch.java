@@ -0,0 +1,487 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A known-plaintext search for the keys of an Enigma machine, in the
+ *  manner of the Bombe.  Given a stretch of ciphertext and a crib (a
+ *  guess at the plaintext of part of it), it tries every rotor order
+ *  the machine's configuration allows, every starting position and,
+ *  optionally, every ring setting, and reports those keys under which
+ *  the crib enciphers to the ciphertext at one of a given set of
+ *  offsets.  A candidate is abandoned at its first letter that does
+ *  not match, so most cost one or two keystrokes.  The plugboard is
+ *  taken as known (by default, empty).
+ *
+ *  The search space is cut into one task per rotor order and ring
+ *  setting, which are spread over the threads of a ForkJoinPool, each
+ *  working on its own Machine.  Within a task, candidates differing
+ *  only in the positions of the pawl rotors are tried together, so a
+ *  machine in compiled mode reuses its tables across them and across
+ *  offsets.  Since most candidates fail at their first letter, that
+ *  pays only when many offsets are tried.
+ *  @author Dhruv Sirohi
+ */
+class KeySearch {
+
+    /** A key found by a search. */
+    static class Key {
+
+        /** A key inserting ROTORS (reflector first), with the window
+         *  letters SETTING at the start of the message and ring setting
+         *  RINGS (null if rings were not searched), which enciphers the
+         *  crib to the ciphertext at OFFSET. */
+        Key(String[] rotors, String setting, String rings, int offset) {
+            _rotors = rotors;
+            _setting = setting;
+            _rings = rings;
+            _offset = offset;
+        }
+
+        /** Return the rotors I insert, reflector first. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return my window letters at the start of the message. */
+        String setting() {
+            return _setting;
+        }
+
+        /** Return my ring setting, or null if rings were not searched. */
+        String rings() {
+            return _rings;
+        }
+
+        /** Return the offset in the ciphertext at which the crib
+         *  matches. */
+        int offset() {
+            return _offset;
+        }
+
+        /** Returns me as a setting line (without a plugboard) that Main
+         *  accepts. */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("*");
+            for (String rotor : _rotors) {
+                result.append(' ').append(rotor);
+            }
+            result.append(' ').append(_setting);
+            if (_rings != null) {
+                result.append(' ').append(_rings);
+            }
+            return result.toString();
+        }
+
+        /** Rotors, reflector first. */
+        private final String[] _rotors;
+        /** Window letters at the start of the message. */
+        private final String _setting;
+        /** Ring setting, or null. */
+        private final String _rings;
+        /** Offset of the crib. */
+        private final int _offset;
+    }
+
+    /** A search for keys of machines configured like MACHINE that
+     *  encipher CRIB to CIPHER at each of OFFSETS (see cribOffsets),
+     *  where the message starts at the beginning of CIPHER.  Only the
+     *  available rotors of MACHINE are used, not its state.  If RINGS,
+     *  ring settings are searched too; otherwise all rings are at the
+     *  first letter of the alphabet.  It is an error for the number of
+     *  rotor orders not to fit in an int, or of keys in a long. */
+    KeySearch(Machine machine, String cipher, String crib, int[] offsets,
+              boolean rings) {
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _cipher = _alphabet.toInts(cipher);
+        _crib = _alphabet.toInts(crib);
+        _offsets = offsets.clone();
+        for (int offset : _offsets) {
+            if (offset < 0 || offset + _crib.length > _cipher.length) {
+                throw new EnigmaException("Crib offset out of range.");
+            }
+        }
+        _plugboard = new Permutation("", _alphabet);
+        int size = _alphabet.size();
+        _ringedRotors = rings ? Math.max(0, machine.numPawls() - 1) : 0;
+        try {
+            _ringSettings = power(size, _ringedRotors);
+            _tasks = Math.multiplyExact(_ringSettings,
+                                        Math.toIntExact(orderCount(machine)));
+            _keysTotal = Math.multiplyExact(_tasks, Math.multiplyExact(
+                    power(size, machine.numRotors() - 1), _offsets.length));
+        } catch (ArithmeticException excp) {
+            throw new EnigmaException("key space too large");
+        }
+        _orders = rotorOrders(machine);
+    }
+
+    /** Return the offsets in CIPHER at which CRIB might have been
+     *  enciphered, counted in characters (code points), in increasing
+     *  order: those where it fits and no letter of it lies over the same
+     *  letter of CIPHER, since the reflector ensures no letter ever
+     *  enciphers to itself. */
+    static int[] cribOffsets(String cipherText, String cribText) {
+        int[] cipher = cipherText.codePoints().toArray(),
+            crib = cribText.codePoints().toArray();
+        ArrayList<Integer> offsets = new ArrayList<Integer>();
+        for (int k = 0; k + crib.length <= cipher.length; k++) {
+            boolean possible = true;
+            for (int i = 0; i < crib.length && possible; i++) {
+                possible = crib[i] != cipher[k + i];
+            }
+            if (possible) {
+                offsets.add(k);
+            }
+        }
+        int[] result = new int[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+        }
+        return result;
+    }
+
+    /** Set the plugboard assumed by the search to PLUGBOARD. */
+    void setPlugboard(Permutation plugboard) {
+        _plugboard = plugboard;
+    }
+
+    /** Run the machines of the search in compiled mode with up to
+     *  MAXBYTES of tables each (see Machine.setCompiledLimit). */
+    void setCompiledLimit(long maxBytes) {
+        _compiledLimit = maxBytes;
+    }
+
+    /** Stop the search once it has found MAX keys. */
+    void setMaxResults(int max) {
+        _maxResults = max;
+    }
+
+    /** Start searching on the threads of POOL.  Returns at once; see
+     *  await. */
+    void start(ForkJoinPool pool) {
+        _threads = pool.getParallelism();
+        _startTime = System.nanoTime();
+        _task = pool.submit(() -> {
+            new Search(0, _tasks).invoke();
+            _elapsed = System.nanoTime() - _startTime;
+        });
+    }
+
+    /** Wait up to MILLIS milliseconds for the search to finish, and
+     *  return true iff it has. */
+    boolean await(long millis) throws InterruptedException {
+        try {
+            _task.get(millis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException excp) {
+            return false;
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new EnigmaException(excp.getCause().toString());
+        }
+    }
+
+    /** Stop the search as soon as possible.  Keys found so far are
+     *  kept. */
+    void cancel() {
+        _cancelled = true;
+    }
+
+    /** Return true iff the search was stopped before trying every
+     *  key. */
+    boolean cancelled() {
+        return _cancelled;
+    }
+
+    /** Return the number of candidate keys (counting each offset
+     *  separately) the search covers. */
+    long keysTotal() {
+        return _keysTotal;
+    }
+
+    /** Return the number of candidate keys tried so far. */
+    long keysTested() {
+        return _tested.get();
+    }
+
+    /** Return the keys found so far, in no particular order. */
+    List<Key> results() {
+        synchronized (_results) {
+            return new ArrayList<Key>(_results);
+        }
+    }
+
+    /** Return the candidate keys tried per second by each thread, once
+     *  the search has finished. */
+    double keysPerSecondPerThread() {
+        return keysTested() * 1e9 / Math.max(1, _elapsed) / _threads;
+    }
+
+    /** Return BASE to the power EXPONENT, or throw an
+     *  ArithmeticException if that would overflow. */
+    private static long power(long base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result = Math.multiplyExact(result, base);
+        }
+        return result;
+    }
+
+    /** Return every arrangement of the available rotors MACHINE may
+     *  insert: a reflector, then distinct non-moving rotors, then
+     *  distinct moving ones. */
+    static List<String[]> rotorOrders(Machine machine) {
+        ArrayList<String> reflectors = new ArrayList<String>(),
+            fixed = new ArrayList<String>(), moving = new ArrayList<String>();
+        for (Rotor rotor : machine.availableRotors()) {
+            if (rotor instanceof Reflector) {
+                reflectors.add(rotor.name());
+            } else if (rotor instanceof MovingRotor) {
+                moving.add(rotor.name());
+            } else if (rotor instanceof FixedRotor) {
+                fixed.add(rotor.name());
+            }
+        }
+        Collections.sort(reflectors);
+        Collections.sort(fixed);
+        Collections.sort(moving);
+        int numRotors = machine.numRotors(), pawls = machine.numPawls();
+        ArrayList<String[]> result = new ArrayList<String[]>();
+        for (String reflector : reflectors) {
+            String[] order = new String[numRotors];
+            order[0] = reflector;
+            arrange(order, 1, numRotors - pawls, fixed, moving, result);
+        }
+        return result;
+    }
+
+    /** Return the number of orders rotorOrders(MACHINE) returns, or
+     *  throw an ArithmeticException if that does not fit in a long. */
+    static long orderCount(Machine machine) {
+        int reflectors = 0, fixed = 0, moving = 0;
+        for (Rotor rotor : machine.availableRotors()) {
+            if (rotor instanceof Reflector) {
+                reflectors += 1;
+            } else if (rotor instanceof MovingRotor) {
+                moving += 1;
+            } else if (rotor instanceof FixedRotor) {
+                fixed += 1;
+            }
+        }
+        int pawls = machine.numPawls();
+        long result = reflectors;
+        for (int k = 0; k < machine.numRotors() - 1 - pawls; k++) {
+            result = Math.multiplyExact(result, Math.max(0, fixed - k));
+        }
+        for (int k = 0; k < pawls; k++) {
+            result = Math.multiplyExact(result, Math.max(0, moving - k));
+        }
+        return result;
+    }
+
+    /** Fill slots K.. of ORDER, whose slots up to FIRSTPAWL-1 take
+     *  rotors from FIXED and the rest from MOVING, in every way that
+     *  repeats no rotor, adding each completed order to RESULT. */
+    private static void arrange(String[] order, int k, int firstPawl,
+                                List<String> fixed, List<String> moving,
+                                List<String[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        List<String> choices = k < firstPawl ? fixed : moving;
+        for (String name : choices) {
+            boolean repeated = false;
+            for (int i = 1; i < k && !repeated; i++) {
+                repeated = order[i].equals(name);
+            }
+            if (!repeated) {
+                order[k] = name;
+                arrange(order, k + 1, firstPawl, fixed, moving, result);
+            }
+        }
+    }
+
+    /** Step DIGITS[FROM .. TO-1], a number in base SIZE whose last digit
+     *  is least significant, to the next value, and return false iff it
+     *  wrapped around to all zeroes. */
+    private static boolean increment(int[] digits, int from, int to,
+                                     int size) {
+        for (int i = to - 1; i >= from; i--) {
+            digits[i] += 1;
+            if (digits[i] < size) {
+                return true;
+            }
+            digits[i] = 0;
+        }
+        return false;
+    }
+
+    /** Try every candidate of task number TASK: one rotor order and
+     *  ring setting, with every starting position and offset. */
+    private void search(long task) {
+        String[] order = _orders.get((int) (task / _ringSettings));
+        int size = _alphabet.size();
+        int numRotors = _machine.numRotors();
+        int firstPawl = numRotors - _machine.numPawls();
+        int[] rings = new int[numRotors - 1];
+        long ringIndex = task % _ringSettings;
+        for (int i = 0; i < _ringedRotors; i++) {
+            rings[numRotors - 2 - i] = (int) (ringIndex % size);
+            ringIndex /= size;
+        }
+        Machine m = new Machine(_alphabet, numRotors, _machine.numPawls(),
+                                _machine.registry());
+        m.setCompiledLimit(_compiledLimit);
+        m.insertRotors(order);
+        StringBuilder ringLetters = new StringBuilder();
+        for (int ring : rings) {
+            ringLetters.appendCodePoint(_alphabet.codePoint(ring));
+        }
+        m.stellungSet(ringLetters.toString());
+        m.setPlugboard(_plugboard);
+
+        int[] start = new int[numRotors - 1];
+        long tested = 0;
+        do {
+            for (int offset : _offsets) {
+                do {
+                    m.setRotors(start);
+                    m.seek(offset);
+                    int i;
+                    for (i = 0; i < _crib.length; i++) {
+                        if (m.convert(_crib[i]) != _cipher[offset + i]) {
+                            break;
+                        }
+                    }
+                    if (i == _crib.length) {
+                        found(order, start, rings, ringLetters, offset);
+                    }
+                    tested += 1;
+                } while (increment(start, firstPawl - 1, start.length, size));
+            }
+            _tested.addAndGet(tested);
+            tested = 0;
+        } while (!_cancelled && increment(start, 0, firstPawl - 1, size));
+    }
+
+    /** Record the key with rotors ORDER, internal starting positions
+     *  START and RINGS (whose letters are RINGLETTERS) that matched at
+     *  OFFSET. */
+    private void found(String[] order, int[] start, int[] rings,
+                       CharSequence ringLetters, int offset) {
+        int size = _alphabet.size();
+        StringBuilder setting = new StringBuilder();
+        for (int i = 0; i < start.length; i++) {
+            setting.appendCodePoint(
+                    _alphabet.codePoint((start[i] + rings[i]) % size));
+        }
+        Key key = new Key(order.clone(), setting.toString(),
+                          _ringedRotors > 0 ? ringLetters.toString() : null,
+                          offset);
+        synchronized (_results) {
+            if (_results.size() < _maxResults) {
+                _results.add(key);
+            }
+            if (_results.size() >= _maxResults) {
+                _cancelled = true;
+            }
+        }
+    }
+
+    /** The search of a range of tasks. */
+    private class Search extends RecursiveAction {
+
+        /** A search of tasks FROM .. TO-1. */
+        Search(long from, long to) {
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (_cancelled) {
+                return;
+            }
+            if (_to - _from > 1) {
+                long mid = (_from + _to) >>> 1;
+                invokeAll(new Search(_from, mid), new Search(mid, _to));
+            } else if (_to > _from) {
+                search(_from);
+            }
+        }
+
+        /** Bounds of my tasks. */
+        private final long _from, _to;
+    }
+
+    /** Supplies the available rotors and the shape of the machines
+     *  searched. */
+    private final Machine _machine;
+
+    /** Common alphabet of the rotors. */
+    private final Alphabet _alphabet;
+
+    /** The ciphertext and crib, as indices in _alphabet. */
+    private final int[] _cipher, _crib;
+
+    /** Offsets in _cipher at which to try _crib. */
+    private final int[] _offsets;
+
+    /** Every rotor order, reflector first. */
+    private final List<String[]> _orders;
+
+    /** Number of rotors (the rightmost pawl rotors but the leftmost)
+     *  whose rings are searched. */
+    private final int _ringedRotors;
+
+    /** Number of ring settings per rotor order. */
+    private final long _ringSettings;
+
+    /** Number of tasks: rotor orders times ring settings. */
+    private final long _tasks;
+
+    /** Number of candidates in all. */
+    private final long _keysTotal;
+
+    /** Plugboard assumed for every candidate. */
+    private Permutation _plugboard;
+
+    /** Compiled-mode limit for the machines of the search. */
+    private long _compiledLimit;
+
+    /** Number of keys after which the search stops. */
+    private int _maxResults = Integer.MAX_VALUE;
+
+    /** True once the search should stop. */
+    private volatile boolean _cancelled;
+
+    /** Number of candidates tried so far. */
+    private final AtomicLong _tested = new AtomicLong();
+
+    /** Keys found so far. */
+    private final List<Key> _results = new ArrayList<Key>();
+
+    /** The running search. */
+    private ForkJoinTask<?> _task;
+
+    /** Parallelism of the pool the search runs on. */
+    private int _threads = 1;
+
+    /** When the search started, and how long it took, in
+     *  nanoseconds. */
+    private long _startTime, _elapsed;
+}
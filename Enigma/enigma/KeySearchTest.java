@@ -0,0 +1,140 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Dhruv Sirohi
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a 3-rotor, 2-pawl machine holding reflector B and naval
+     *  rotors I, II and III. */
+    static Machine smallMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        String[][] moving = { { "I", "Q" }, { "II", "E" }, { "III", "V" } };
+        for (String[] rotor : moving) {
+            rotors.add(new MovingRotor(rotor[0],
+                    new Permutation(NAVALA.get(rotor[0]), UPPER), rotor[1]));
+        }
+        return new Machine(UPPER, 3, 2, rotors);
+    }
+
+    /** Return the keys found by SEARCH on a pool of two threads, as
+     *  setting lines. */
+    static List<String> run(KeySearch search) throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        search.start(pool);
+        while (!search.await(100)) {
+            assertTrue("Progress past total",
+                       search.keysTested() <= search.keysTotal());
+        }
+        pool.shutdown();
+        List<String> result = new ArrayList<>();
+        for (KeySearch.Key key : search.results()) {
+            result.add(key.toString());
+        }
+        return result;
+    }
+
+    /** Plaintext of the messages searched. */
+    private static final String PLAIN =
+        "WETTERVORHERSAGEBISKAYAHEUTEREGENUNDSTURMAUSWESTEN";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkCribOffsets() {
+        assertArrayEquals("Wrong offsets", new int[] { 1 },
+                          KeySearch.cribOffsets("ABCAB", "AA"));
+        assertArrayEquals("Crib longer than text", new int[0],
+                          KeySearch.cribOffsets("AB", "ABC"));
+    }
+
+    @Test
+    public void checkFindsKey() throws InterruptedException {
+        Machine m = smallMachine();
+        m.insertRotors(new String[] { "B", "III", "I" });
+        m.setRotors("KD");
+        m.setPlugboard(new Permutation("", UPPER));
+        String cipher = m.convert(PLAIN);
+        KeySearch search = new KeySearch(smallMachine(), cipher,
+                                         PLAIN.substring(10, 30),
+                                         new int[] { 10 }, false);
+        assertEquals("Wrong keys", Arrays.asList("* B III I KD"),
+                     run(search));
+        assertEquals("Not every key tried", search.keysTotal(),
+                     search.keysTested());
+        assertFalse("Search cancelled", search.cancelled());
+    }
+
+    @Test
+    public void checkFindsRings() throws InterruptedException {
+        Machine m = smallMachine();
+        m.insertRotors(new String[] { "B", "II", "I" });
+        m.stellungSet("AM");
+        m.setRotors("GP");
+        m.setPlugboard(new Permutation("(AT) (ER)", UPPER));
+        String cipher = m.convert(PLAIN);
+        KeySearch search = new KeySearch(smallMachine(), cipher, PLAIN,
+                                         new int[] { 0 }, true);
+        search.setPlugboard(new Permutation("(AT) (ER)", UPPER));
+        search.setCompiledLimit(1 << 20);
+        assertTrue("Key not found", run(search).contains("* B II I GP AM"));
+    }
+
+    @Test
+    public void checkKeySpaceTooLarge() {
+        ArrayList<Rotor> rotors = new ArrayList<>(
+                smallMachine().availableRotors());
+        for (int i = 0; i < 14; i++) {
+            rotors.add(new MovingRotor("M" + i,
+                    new Permutation(NAVALA.get("I"), UPPER), "Q"));
+        }
+        Machine m = new Machine(UPPER, 15, 14, rotors);
+        try {
+            new KeySearch(m, PLAIN, "WE", new int[] { 0 }, true);
+            fail("Searched more keys than a long holds");
+        } catch (EnigmaException excp) {
+            assertEquals("Wrong message", "key space too large",
+                         excp.getMessage());
+        }
+    }
+
+    @Test
+    public void checkOrderCount() {
+        assertEquals("Wrong count", KeySearch.rotorOrders(smallMachine())
+                     .size(), KeySearch.orderCount(smallMachine()));
+    }
+
+    @Test
+    public void checkMaxResults() throws InterruptedException {
+        Machine m = smallMachine();
+        m.insertRotors(new String[] { "B", "I", "II" });
+        m.setRotors("AA");
+        m.setPlugboard(new Permutation("", UPPER));
+        String cipher = m.convert(PLAIN.substring(0, 2));
+        KeySearch search = new KeySearch(smallMachine(), cipher, "WE",
+                                         new int[] { 0 }, false);
+        search.setMaxResults(1);
+        assertEquals("Too many keys", 1, run(search).size());
+        assertTrue("Search not cancelled", search.cancelled());
+    }
+
+}
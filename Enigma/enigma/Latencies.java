@@ -0,0 +1,94 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A histogram of request latencies, in nanoseconds, that may be added
+ *  to from several threads at once.  Latencies are kept in buckets
+ *  whose bounds grow geometrically, SUB_BUCKETS to each power of two,
+ *  so that recording is an increment and percentiles are within about
+ *  1/SUB_BUCKETS of the true values, whatever their range.
+ *  @author Dhruv Sirohi
+ */
+class Latencies {
+
+    /** Record a request that took NANOS nanoseconds. */
+    void record(long nanos) {
+        _counts.incrementAndGet(bucket(Math.max(nanos, 1)));
+    }
+
+    /** Return the number of requests recorded. */
+    long count() {
+        long result = 0;
+        for (int i = 0; i < _counts.length(); i++) {
+            result += _counts.get(i);
+        }
+        return result;
+    }
+
+    /** Return the latency in nanoseconds below which a fraction Q of the
+     *  recorded requests fall (the upper bound of the bucket holding
+     *  it), or 0 if none have been recorded. */
+    long percentile(double q) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < _counts.length(); i++) {
+            seen += _counts.get(i);
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(_counts.length() - 1);
+    }
+
+    /** Return a one-line report of my requests, their rate over ELAPSED
+     *  nanoseconds, and their median and 99th-percentile latencies. */
+    String summary(long elapsed) {
+        long n = count();
+        return String.format("%d requests in %.3f s: %.0f requests/s, "
+                             + "p50 %.1f us, p99 %.1f us",
+                             n, elapsed / NANOS_PER_SECOND,
+                             elapsed == 0 ? 0 : n * NANOS_PER_SECOND / elapsed,
+                             percentile(MEDIAN) / NANOS_PER_MICRO,
+                             percentile(P99) / NANOS_PER_MICRO);
+    }
+
+    /** Return the index of the bucket holding NANOS > 0. */
+    private static int bucket(long nanos) {
+        int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        if (exp < SUB_BITS) {
+            return (int) nanos;
+        }
+        int sub = (int) (nanos >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Return the largest latency held by bucket INDEX. */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exp = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    /** Log base 2 of SUB_BUCKETS. */
+    private static final int SUB_BITS = 4;
+
+    /** Number of buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Fractions of requests at the reported percentiles. */
+    private static final double MEDIAN = 0.5, P99 = 0.99;
+
+    /** Nanoseconds in a second and in a microsecond. */
+    private static final double NANOS_PER_SECOND = 1e9, NANOS_PER_MICRO = 1e3;
+
+    /** Number of requests in each bucket. */
+    private final AtomicLongArray _counts =
+        new AtomicLongArray((Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS);
+}
@@ -2,14 +2,11 @@ package enigma;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
-import java.util.Collections;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Writer;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /** Class that represents a complete enigma machine.
  *  @author Dhruv Sirohi
@@ -18,19 +15,85 @@ class Machine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
-     *  available rotors. */
+     *  available rotors.  These serve only as patterns: the rotors I
+     *  actually insert are copies of them (see Rotor.copy), so any number
+     *  of machines may be built from the same ALLROTORS. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) throws EnigmaException {
+        this(alpha, numRotors, pawls, new RotorRegistry(allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose available rotors are those
+     *  of REGISTRY, which may be shared with other machines. */
+    Machine(Alphabet alpha, int numRotors, int pawls,
+            RotorRegistry registry) {
         _alphabet = alpha;
         _numRotors = numRotors;
         _pawls = pawls;
-        _allRotors = allRotors;
-        Iterator<Rotor> iter = _allRotors.iterator();
-        _rotorMap = new HashMap<String, Rotor>();
-        while (iter.hasNext()) {
-            Rotor temp = iter.next();
-            _rotorMap.put(temp.name(), temp);
+        _registry = registry;
+        _ownRotors = new Rotor[registry.size()];
+    }
+
+    /** A copy of MACHINE (see copy()). */
+    private Machine(Machine machine) {
+        _alphabet = machine._alphabet;
+        _numRotors = machine._numRotors;
+        _pawls = machine._pawls;
+        _registry = machine._registry;
+        _ownRotors = new Rotor[_registry.size()];
+        for (int id = 0; id < _ownRotors.length; id++) {
+            if (machine._ownRotors[id] != null) {
+                _ownRotors[id] = machine._ownRotors[id].copy();
+            }
         }
+        if (machine._usedRotors != null) {
+            _usedIds = machine._usedIds;
+            _usedRotors = new Rotor[_usedIds.length];
+            for (int i = 0; i < _usedRotors.length; i++) {
+                _usedRotors[i] = _ownRotors[_usedIds[i]];
+            }
+            _pawlRotors = pawlRotors(_usedRotors);
+            _fused = machine._fused;
+        }
+        _plugBoard = machine._plugBoard;
+        _compiledLimit = machine._compiledLimit;
+    }
+
+    /** Return a snapshot of me: a new machine with the same available
+     *  rotors, inserted rotors, rotor positions and ring settings, and
+     *  plugboard, that can be used alongside me, for instance by another
+     *  thread.  It shares with me only what never changes, namely the
+     *  pattern rotors and the compiled tables of permutations, so the
+     *  cost is that of copying the handful of rotors I have used.  It is
+     *  in compiled mode iff I am, but builds its own tables. */
+    Machine copy() {
+        return new Machine(this);
+    }
+
+    /** Return my own copy of the available rotor whose id in my registry
+     *  is ID, making it if need be. */
+    private Rotor ownRotor(int id) {
+        Rotor result = _ownRotors[id];
+        if (result == null) {
+            result = _ownRotors[id] = _registry.rotor(id).copy();
+        }
+        return result;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the pattern rotors I was built from. */
+    Collection<Rotor> availableRotors() {
+        return _registry.rotors();
+    }
+
+    /** Return the registry of my available rotors. */
+    RotorRegistry registry() {
+        return _registry;
     }
 
     /** Return the number of rotor slots I have. */
@@ -43,169 +106,483 @@ class Machine {
         return _pawls;
     }
 
+    /** Return the rotor in slot SLOT (0 for the reflector), which must
+     *  have been filled by insertRotors. */
+    Rotor rotor(int slot) {
+        return _usedRotors[slot];
+    }
+
+    /** Return my plugboard. */
+    Permutation plugboard() {
+        return _plugBoard;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
-        int numRotors = rotors.length;
-        _usedRotors = new Rotor[numRotors];
-
-        if (!(_rotorMap.containsKey(rotors[0]))) {
-            throw new EnigmaException("Reflector not in config.");
-        } else {
-            _usedRotors[0] = _rotorMap.get(rotors[0]);
+        int[] ids = _registry.ids(rotors, numRotors(), numPawls());
+        Rotor[] previous = _usedRotors;
+        _usedIds = ids;
+        _usedRotors = new Rotor[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            _usedRotors[i] = ownRotor(ids[i]);
         }
-        if (!(_usedRotors[0] instanceof  Reflector)) {
-            throw new EnigmaException(" First rotor must be a reflector.");
-        } else if (!_usedRotors[0].permutation().derangement()) {
-            throw new EnigmaException("Reflector should be a derangement.");
+        if (!Arrays.equals(previous, _usedRotors)) {
+            _compiled = null;
+            _fused = null;
         }
+        _pawlRotors = pawlRotors(_usedRotors);
+    }
 
-        for (int i = 1; i < numRotors; i++) {
-            if (i >= numRotors() - numPawls()) {
-                if (!(_rotorMap.containsKey(rotors[i]))) {
-                    throw new EnigmaException("Rotor not in configuration");
-                }
-                _usedRotors[i] =  _rotorMap.get(rotors[i]);
-                if (!(_usedRotors[i] instanceof MovingRotor)) {
-                    throw new EnigmaException("Rotor number " + i
-                            + " must be a Moving Rotor.");
-                }
-            } else {
-                if (!(_rotorMap.containsKey(rotors[i]))) {
-                    throw new EnigmaException("Rotor not in configuration");
-                }
-                _usedRotors[i] =  _rotorMap.get(rotors[i]);
-                if (!(_usedRotors[i] instanceof FixedRotor)) {
-                    throw new EnigmaException("Rotor number "
-                            + i + " must be a Fixed Rotor.");
-                }
-            }
-
-        }
-
-        for (int i = 0; i < _usedRotors.length; i++) {
-            for (int j = i + 1; j < _usedRotors.length; j++) {
-                if (_usedRotors[i].name().compareTo(_usedRotors[j].name())
-                        == 0) {
-                    throw new EnigmaException("Rotors"
-                            + " cannot be repeated in the machine.");
-                }
-            }
+    /** Return the rotors in the pawl slots of ROTORS, which must all be
+     *  MovingRotors, from left to right. */
+    private MovingRotor[] pawlRotors(Rotor[] rotors) {
+        MovingRotor[] result = new MovingRotor[numPawls()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (MovingRotor) rotors[rotors.length - result.length + i];
         }
+        return result;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        if (setting.length() != numRotors() - 1) {
+        int[] positions = setting.codePoints().toArray();
+        if (positions.length != numRotors() - 1) {
             throw new EnigmaException("Invalid number of settings.");
         } else {
-            for (int i = 1; i <= setting.length(); i++) {
-                Alphabet alpha = _usedRotors[i]._alpha;
-                _usedRotors[i].set(alpha.toInt(setting.charAt(i - 1)));
+            for (int i = 1; i <= positions.length; i++) {
+                positions[i - 1] = _usedRotors[i].positionOf(positions[i - 1]);
+            }
+            setRotors(positions);
+        }
+    }
+
+    /** Set my rotors to POSITIONS, numRotors()-1 settings in the range
+     *  0..alphabet size - 1, leftmost (not counting the reflector)
+     *  first.  These are the indices of the letters setRotors(String)
+     *  would take, counted from each rotor's ring setting. */
+    void setRotors(int[] positions) {
+        for (int i = 1; i <= positions.length; i++) {
+            int old = _usedRotors[i].setting();
+            _usedRotors[i].set(positions[i - 1]);
+            if (i < numRotors() - numPawls()
+                    && old != _usedRotors[i].setting()) {
+                _compiled = null;
+                _fused = null;
             }
         }
     }
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
+        if (_plugBoard == null
+                || !Arrays.equals(_plugBoard.forwardTable(),
+                                  plugboard.forwardTable())) {
+            _compiled = null;
+        }
         _plugBoard = plugboard;
     }
 
-    /** Checks if the conditions are satisfied
-     * for a  moving rotor to rotate.
-     * Then rotates it.
-     * @param r - list of rotors in machine.
-     */
-    void checkRotate(Rotor[] r) {
-        int[] moveCheck = new int[r.length];
-        moveCheck[r.length - 1] = 1;
-        for (int k = r.length - 2; k >= numRotors() - numPawls(); k--) {
-            if (r[k + 1].atNotch() && r[k].rotates()) {
-                moveCheck[k] = 1;
+    /** Turns compiled mode on, letting it hold up to MAXBYTES of tables,
+     *  or off if MAXBYTES is 0.  In compiled mode, the composite
+     *  substitution performed in each position of the pawl rotors is
+     *  computed the first time that position is reached and then reused,
+     *  so a keystroke costs one step and one array load.  The tables
+     *  survive new settings that only move the pawl rotors, and are
+     *  dropped whenever the rotors, the positions of the non-moving
+     *  rotors, or the plugboard change.  If a table for every position
+     *  would not fit in MAXBYTES, conversion proceeds uncompiled. */
+    void setCompiledLimit(long maxBytes) {
+        _compiledLimit = maxBytes;
+        _compiled = null;
+    }
+
+    /** Return the table for the current positions of my pawl rotors,
+     *  filling it in if need be, or null if compiled mode is off or
+     *  would exceed its limit. */
+    private int[] compiledTable() {
+        Rotor[] r = _usedRotors;
+        int size = _alphabet.size();
+        if (_compiled == null) {
+            long states = 1;
+            for (int i = 0; i < numPawls() && states <= _compiledLimit; i++) {
+                states *= size;
+            }
+            if (states * (STATE_OVERHEAD + 4L * size) > _compiledLimit) {
+                _compiled = TOO_BIG;
             } else {
-                moveCheck[k] = 0;
+                _compiled = new int[(int) states][];
             }
         }
-        for (int k = 1; k < r.length - 1; k++) {
-            if (moveCheck[k - 1] == 1) {
-                moveCheck[k] = 1;
+        if (_compiled == TOO_BIG) {
+            return null;
+        }
+        int state = 0;
+        for (int i = r.length - numPawls(); i < r.length; i++) {
+            state = state * size + r[i].setting();
+        }
+        int[] table = _compiled[state];
+        if (table == null) {
+            table = new int[size];
+            for (int c = 0; c < size; c++) {
+                table[c] = substitute(c);
+            }
+            _compiled[state] = table;
+        }
+        return table;
+    }
+
+    /** Advances the rotors for one keystroke.  The rightmost rotor
+     *  always advances; if a pawl rotor's right neighbor is at a notch,
+     *  that rotor and every rotor to its right advance as well.  Notches
+     *  are all read before anything moves.  Every notch is read, right
+     *  to left, so that the leftmost one found is chosen without a
+     *  data-dependent exit from the loop. */
+    void checkRotate() {
+        MovingRotor[] r = _pawlRotors;
+        int last = r.length - 1;
+        int first = last;
+        for (int k = last - 1; k >= 0; k--) {
+            first = r[k + 1].atNotch() ? k : first;
+        }
+        for (int j = last; j >= first && j >= 0; j--) {
+            r[j].advance();
+        }
+    }
+
+    /** Advances my rotors as N keystrokes would, without converting
+     *  anything.  Keystrokes on which only the two rightmost rotors move
+     *  are skipped over in bulk: the rightmost rotor advances on every
+     *  keystroke, and the one to its left on exactly those where the
+     *  rightmost is at a notch, so both positions follow in closed form
+     *  up to the point where the second rotor reaches a notch of its
+     *  own.  Only keystrokes that move a third rotor (one in every
+     *  alphabet-size-squared or so) are stepped through singly. */
+    void seek(long n) {
+        Rotor[] r = _usedRotors;
+        int size = _alphabet.size();
+        int last = r.length - 1, first = r.length - numPawls();
+        if (numPawls() < 2) {
+            if (numPawls() == 1) {
+                r[last].set((int) ((r[last].setting() + n) % size));
+            }
+            return;
+        }
+        int[] lastNotches = ((MovingRotor) r[last]).notchSettings();
+        int[] nextNotches = ((MovingRotor) r[last - 1]).notchSettings();
+        while (n > 0) {
+            if (atNotch(first + 1, last - 1)) {
+                checkRotate();
+                n -= 1;
+                continue;
             }
+            int x = r[last].setting(), y = r[last - 1].setting();
+            long jump = n;
+            if (last - 1 > first && lastNotches.length > 0) {
+                int gap = gapToNotch(nextNotches, y, size);
+                if (gap > 0) {
+                    jump = Math.min(n, hitStep(lastNotches, x, size, gap) + 1);
+                }
+            }
+            long moves = hits(lastNotches, x, size, jump);
+            r[last].set((int) ((x + jump) % size));
+            r[last - 1].set((int) ((y + moves) % size));
+            n -= jump;
         }
-        for (int j = r.length - 1; j > 0; j--) {
-            if (moveCheck[j] == 1) {
-                r[j].advance();
+    }
+
+    /** Return true iff any of my rotors FROM..TO, inclusive, is at a
+     *  notch. */
+    private boolean atNotch(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            if (_usedRotors[i].atNotch()) {
+                return true;
             }
         }
+        return false;
     }
 
+    /** Return the least number of advances, at least 1, that take a
+     *  rotor with the given NOTCHES (settings, in increasing order) from
+     *  setting Y to a notch in an alphabet of SIZE, or -1 if it has no
+     *  notches. */
+    private static int gapToNotch(int[] notches, int y, int size) {
+        int result = -1;
+        for (int notch : notches) {
+            int gap = notch > y ? notch - y : notch - y + size;
+            if (result < 0 || gap < result) {
+                result = gap;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of the keystroke (counting from 0) on which a
+     *  rightmost rotor with the given NOTCHES, starting at setting X in
+     *  an alphabet of SIZE, is at a notch for the Kth time (K >= 1).
+     *  NOTCHES must not be empty. */
+    private static long hitStep(int[] notches, int x, int size, long k) {
+        int count = notches.length;
+        int firstAhead = 0;
+        while (firstAhead < count && notches[firstAhead] < x) {
+            firstAhead += 1;
+        }
+        int j = firstAhead + (int) ((k - 1) % count);
+        long offset = j < count ? notches[j] - x
+            : notches[j - count] - x + size;
+        return (k - 1) / count * size + offset;
+    }
+
+    /** Return how many of the first T keystrokes find a rightmost rotor
+     *  with the given NOTCHES, starting at setting X in an alphabet of
+     *  SIZE, at a notch. */
+    private static long hits(int[] notches, int x, int size, long t) {
+        long result = t / size * notches.length;
+        long rest = t % size;
+        for (int notch : notches) {
+            int offset = notch >= x ? notch - x : notch - x + size;
+            if (offset < rest) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Performs convert(MSG, START, LEN, RESULT) using the threads of
+     *  POOL.  The message is cut into chunks, each converted on a copy
+     *  of me that has been moved to the chunk's offset with seek, and I
+     *  am then moved past the whole message.  As with the sequential
+     *  version, a character outside my alphabet raises an exception
+     *  once the characters before it have been converted. */
+    void convert(char[] msg, int start, int len, char[] result,
+                 ForkJoinPool pool) {
+        int end = start;
+        while (end < start + len && _alphabet.contains(msg[end])) {
+            end += 1;
+        }
+        int chunk = Math.max(MIN_PARALLEL_CHUNK, (end - start)
+                             / (CHUNKS_PER_THREAD * pool.getParallelism()));
+        pool.invoke(new ChunkConversion(msg, start, start, end, result,
+                                        chunk));
+        seek(end - start);
+        if (end < start + len) {
+            throw new EnigmaException("'" + msg[end] + "'"
+                                      + " not in alphabet.");
+        }
+    }
+
+    /** Conversion of part of a message on a copy of a machine, for the
+     *  parallel convert method. */
+    private class ChunkConversion extends RecursiveAction {
+
+        /** Conversion of MSG[FROM .. TO-1] into the same positions of
+         *  RESULT by a copy of the enclosing machine, where MSG[ORIGIN]
+         *  is the first character of the whole message.  Pieces larger
+         *  than CHUNK are split in two. */
+        ChunkConversion(char[] msg, int origin, int from, int to,
+                        char[] result, int chunk) {
+            _msg = msg;
+            _origin = origin;
+            _from = from;
+            _to = to;
+            _result = result;
+            _chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from > _chunk) {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new ChunkConversion(_msg, _origin, _from, mid,
+                                              _result, _chunk),
+                          new ChunkConversion(_msg, _origin, mid, _to,
+                                              _result, _chunk));
+            } else {
+                Machine machine = copy();
+                machine.seek(_from - _origin);
+                machine.convert(_msg, _from, _to - _from, _result);
+            }
+        }
+
+        /** The whole message. */
+        private final char[] _msg;
+        /** Index of the start of the whole message. */
+        private final int _origin;
+        /** Bounds of my piece of it. */
+        private final int _from, _to;
+        /** Where results go. */
+        private final char[] _result;
+        /** Largest piece converted without splitting. */
+        private final int _chunk;
+    }
+
+    /** Smallest chunk that the parallel convert gives a thread. */
+    static final int MIN_PARALLEL_CHUNK = 4096;
+
+    /** Number of chunks per thread the parallel convert aims for. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
-     *  the machine.
+     *  the machine.  In compiled mode, this is one table lookup.
      * @param c - index of letter to convert.
      *  */
     int convert(int c) {
-        List<Rotor> rotorList = Arrays.asList(_usedRotors);
-        int j = 0;
-        int nextVal = _plugBoard.permute(c);
-        checkRotate(_usedRotors);
-        while (j < 2) {
-            Collections.reverse(Arrays.asList(_usedRotors));
-            Iterator<Rotor> iter = rotorList.iterator();
-            if (j == 1) {
-                iter.next();
+        checkRotate();
+        if (_compiledLimit > 0) {
+            int[] table = compiledTable();
+            if (table != null) {
+                return table[_plugBoard.wrap(c)];
             }
+        }
+        return substitute(c);
+    }
 
-            while (iter.hasNext()) {
+    /** Advances me as TABLES.length keystrokes would, storing in
+     *  TABLES[k], an array as long as my alphabet, the substitution
+     *  performed on keystroke K, plugboard included. */
+    void keystrokeTables(int[][] tables) {
+        for (int[] table : tables) {
+            checkRotate();
+            for (int c = 0; c < table.length; c++) {
+                table[c] = substitute(c);
+            }
+        }
+    }
 
-                Rotor rotor = iter.next();
+    /** Returns the result of sending C through the plugboard and rotors
+     *  in their current positions, without advancing anything.  Walks
+     *  the pawl rotors right to left, through the fused table of the
+     *  rotors that do not move, and back out again, without
+     *  allocating. */
+    private int substitute(int c) {
+        Rotor[] r = _pawlRotors;
+        int[] fused = _fused == null ? fusedTable() : _fused;
+        int nextVal = _plugBoard.permute(c);
+        for (int i = r.length - 1; i >= 0; i--) {
+            nextVal = r[i].convertForward(nextVal);
+        }
+        nextVal = fused[nextVal];
+        for (int i = 0; i < r.length; i++) {
+            nextVal = r[i].convertBackward(nextVal);
+        }
+        return _plugBoard.permute(nextVal);
+    }
 
-                if (j == 0) {
-                    nextVal = rotor.convertForward(nextVal);
-                } else {
-                    nextVal = rotor.convertBackward(nextVal);
-                }
+    /** Return _fused, computing it if need be: the substitution made by
+     *  the rotors left of the pawl rotors, the reflector included, on a
+     *  signal entering them from the right, which only a change of those
+     *  rotors or of their settings alters. */
+    private int[] fusedTable() {
+        Rotor[] r = _usedRotors;
+        int first = r.length - numPawls();
+        int[] result = new int[_alphabet.size()];
+        for (int c = 0; c < result.length; c++) {
+            int nextVal = c;
+            for (int i = first - 1; i >= 0; i--) {
+                nextVal = r[i].convertForward(nextVal);
             }
-            j++;
+            for (int i = 1; i < first; i++) {
+                nextVal = r[i].convertBackward(nextVal);
+            }
+            result[c] = nextVal;
         }
-        return _plugBoard.permute(nextVal);
+        _fused = result;
+        return result;
     }
 
-    /** Sets the ring setting according to Ringstellung input.
-     * @param s - String of settigs.
-     * */
+    /** Sets the ring settings according to Ringstellung input S, whose
+     *  first letter is the ring setting of the leftmost rotor (not
+     *  counting the reflector).  Rotors S does not reach get ring
+     *  setting 0, so each call replaces the rings of any before it.
+     *  Call this before setRotors(String), which reads letters through
+     *  the rings. */
     void stellungSet(String s) {
-        int i = 0;
-        while (i < s.length()) {
-            _usedRotors[i + 1].updateRing(s.charAt(i));
-            i++;
+        int[] rings = _alphabet.toInts(s);
+        if (rings.length > numRotors() - 1) {
+            throw new EnigmaException("Invalid number of ring settings.");
+        }
+        for (int i = 1; i < numRotors(); i++) {
+            _usedRotors[i].setRing(i <= rings.length ? rings[i - 1] : 0);
         }
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
-    String convert(String msg) throws IOException {
-        _readMsg = new StringReader(msg);
-        String result = "";
-        while (true) {
-            int c = _readMsg.read();
-            if (c == -1) {
-                break;
-            }
-            char ch = (char) c;
-
-            if (_alphabet.contains(ch)) {
-                int convertedVal = convert(_alphabet.toInt(ch));
-                result += _alphabet.toChar(convertedVal);
-            } else {
+     *  the rotors accordingly.  Unlike the methods converting arrays of
+     *  chars, this handles alphabets with characters outside the Basic
+     *  Multilingual Plane. */
+    String convert(String msg) {
+        if (!_alphabet.bmp()) {
+            StringBuilder result = new StringBuilder(msg.length());
+            msg.codePoints().forEach(cp -> {
+                if (!_alphabet.contains(cp)) {
+                    throw new EnigmaException("'" + new String(
+                            Character.toChars(cp)) + "'" + " not in alphabet.");
+                }
+                result.appendCodePoint(
+                        _alphabet.codePoint(convert(_alphabet.toInt(cp))));
+            });
+            return result.toString();
+        }
+        char[] chars = msg.toCharArray();
+        convert(chars, 0, chars.length, chars);
+        return new String(chars);
+    }
+
+    /** Converts the LEN characters of MSG starting at START, storing
+     *  the results at the same positions of RESULT and updating the
+     *  state of the rotors accordingly.  MSG and RESULT may be the same
+     *  array. */
+    void convert(char[] msg, int start, int len, char[] result) {
+        for (int i = start; i < start + len; i++) {
+            char ch = msg[i];
+            if (!_alphabet.contains(ch)) {
                 throw new EnigmaException("'" + ch + "'" + " not in alphabet.");
             }
+            result[i] = _alphabet.toChar(convert(_alphabet.toInt(ch)));
         }
-        return result;
     }
 
+    /** Converts everything readable from INPUT, writing the results to
+     *  OUTPUT one buffer at a time, so that time is linear and memory
+     *  bounded however long the message is.  OUTPUT is not flushed. */
+    void convert(Reader input, Writer output) throws IOException {
+        char[] buffer = new char[STREAM_BUFFER_SIZE];
+        int len;
+        while ((len = input.read(buffer)) != -1) {
+            convert(buffer, 0, len, buffer);
+            output.write(buffer, 0, len);
+        }
+    }
+
+    /** Number of characters converted per chunk by convert(Reader,
+     *  Writer). */
+    static final int STREAM_BUFFER_SIZE = 8192;
+
+    /** Bytes charged against the compiled-mode limit for each position
+     *  on top of its table: the array header and the reference to it. */
+    private static final long STATE_OVERHEAD = 24;
+
+    /** Value of _compiled when its tables would exceed _compiledLimit. */
+    private static final int[][] TOO_BIG = new int[0][];
+
+    /** Most bytes of tables compiled mode may hold; 0 when it is off. */
+    private long _compiledLimit;
+
+    /** In compiled mode, the table for each position of the pawl rotors
+     *  (numbered as digits of a base-alphabet-size number, leftmost rotor
+     *  most significant), or null where not yet computed.  Null as a
+     *  whole until first needed. */
+    private int[][] _compiled;
+
+    /** The substitution made by the rotors left of the pawl rotors (see
+     *  fusedTable), or null when it must be recomputed.  Never modified
+     *  once made, so copies of me share it. */
+    private int[] _fused;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
@@ -215,24 +592,25 @@ class Machine {
     /** Number of pawls AKA moving rotors in this machine. */
     private int _pawls;
 
-    /** A collection of all available rotors, acquired
-     * from config file.
-     */
-    private Collection<Rotor> _allRotors;
-
     /** An array of all used rotors. Acts as an independent
      * part of the whole.
      */
     private Rotor[] _usedRotors;
 
-    /** Mapping of Name(String) --> Rotor(Rotor). */
-    private Map<String, Rotor> _rotorMap;
+    /** The rotors in my pawl slots, from left to right. */
+    private MovingRotor[] _pawlRotors;
+
+    /** The ids in _registry of the rotors in _usedRotors. */
+    private int[] _usedIds;
+
+    /** The available rotors, acquired from the config file.  Never
+     *  changed, and shared with my copies. */
+    private final RotorRegistry _registry;
+
+    /** My own copies of the rotors in _registry that I have used, by id,
+     *  or null for those not yet used. */
+    private final Rotor[] _ownRotors;
 
     /** Permutation of the plugboard. */
     private Permutation _plugBoard;
-
-    /** Reader for converting the message one
-     * character at a time.
-     */
-    private Reader _readMsg;
 }
@@ -0,0 +1,428 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Dhruv Sirohi
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Directory holding the end-to-end cases that must succeed. */
+    private static final File CORRECT = new File("../testing/correct");
+
+    /** Options selecting each way Main can process its input. */
+    private static final String[][] MAIN_MODES = {
+        {}, { "--compiled" }, { "--parallel=2" },
+    };
+
+    /** Notches of the naval rotors, as in CORRECT/default.conf. */
+    private static final String[][] NOTCHES = {
+        { "I", "Q" }, { "II", "E" }, { "III", "V" }, { "IV", "J" },
+        { "V", "Z" }, { "VI", "ZM" }, { "VII", "ZM" }, { "VIII", "ZM" },
+    };
+
+    /** Return a 5-rotor, 3-pawl machine holding all the naval rotors. */
+    static Machine navalMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String[] rotor : NOTCHES) {
+            rotors.add(new MovingRotor(rotor[0],
+                    new Permutation(NAVALA.get(rotor[0]), UPPER), rotor[1]));
+        }
+        for (String name : Arrays.asList("Beta", "Gamma")) {
+            rotors.add(new FixedRotor(name,
+                    new Permutation(NAVALA.get(name), UPPER)));
+        }
+        for (String name : Arrays.asList("B", "C")) {
+            rotors.add(new Reflector(name,
+                    new Permutation(NAVALA.get(name), UPPER)));
+        }
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /** Return a 6-rotor machine with PAWLS pawls whose rotors, left to
+     *  right, are B, Beta, Gamma, I, VI and VIII, where those in the pawl
+     *  slots have several notches each. */
+    static Machine manyNotchMachine(int pawls) {
+        String[][] slots = { { "Beta", "AZ" }, { "Gamma", "MN" },
+                             { "I", "QAB" }, { "VI", "ZM" },
+                             { "VIII", "ACEGIKMOQSUWY" } };
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        for (int i = 0; i < slots.length; i += 1) {
+            Permutation perm = new Permutation(NAVALA.get(slots[i][0]), UPPER);
+            if (i >= slots.length - pawls) {
+                rotors.add(new MovingRotor(slots[i][0], perm, slots[i][1]));
+            } else {
+                rotors.add(new FixedRotor(slots[i][0], perm));
+            }
+        }
+        return new Machine(UPPER, 6, pawls, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkConvert() throws IOException {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        assertEquals("Wrong conversion", "QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void checkConvertInt() throws IOException {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.setRotors("AADU");
+        m.setPlugboard(new Permutation("", UPPER));
+        String first = m.convert("AAA");
+        m.setRotors("AADU");
+        assertEquals("Setting did not reset state", first, m.convert("AAA"));
+        m.setRotors("AADU");
+        for (int i = 0; i < 3; i += 1) {
+            assertEquals("Wrong int conversion",
+                         UPPER.toInt(first.charAt(i)), m.convert(0));
+        }
+    }
+
+    @Test
+    public void checkStreamingConvert() throws IOException {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 3 * Machine.STREAM_BUFFER_SIZE + 7; i += 1) {
+            msg.append(UPPER_STRING.charAt((i * 7) % 26));
+        }
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "C", "Gamma", "VI", "VII", "VIII" });
+        m.setRotors("ZZZZ");
+        m.setPlugboard(new Permutation("(AZ) (QT)", UPPER));
+        String expected = m.convert(msg.toString());
+        m.setRotors("ZZZZ");
+        StringWriter result = new StringWriter();
+        m.convert(new StringReader(msg.toString()), result);
+        assertEquals("Streaming conversion differs", expected,
+                     result.toString());
+    }
+
+    @Test
+    public void checkCompiledMode() {
+        String msg = UPPER_STRING.repeat(1000);
+        Machine plain = navalMachine(), compiled = navalMachine();
+        compiled.setCompiledLimit(1 << 24);
+        for (Machine m : Arrays.asList(plain, compiled)) {
+            m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+            m.setRotors("AADU");
+            m.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        }
+        String expected = plain.convert(msg);
+        assertEquals("Compiled mode differs", expected, compiled.convert(msg));
+        compiled.setRotors("AADU");
+        compiled.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        assertEquals("Reused tables differ", expected, compiled.convert(msg));
+        compiled.setRotors("AADU");
+        compiled.setPlugboard(new Permutation("(AQ)", UPPER));
+        plain.setRotors("AADU");
+        plain.setPlugboard(new Permutation("(AQ)", UPPER));
+        assertEquals("Stale tables after new plugboard",
+                     plain.convert(msg), compiled.convert(msg));
+        compiled.setCompiledLimit(1000);
+        compiled.setRotors("AADU");
+        compiled.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        assertEquals("Over-limit compiled mode differs",
+                     expected, compiled.convert(msg));
+    }
+
+    @Test
+    public void checkFixedRotorChanges() {
+        String msg = UPPER_STRING.repeat(30);
+        Machine reused = navalMachine();
+        String[][] settings = {
+            { "B", "Beta", "III", "IV", "I", "AXLE" },
+            { "B", "Beta", "III", "IV", "I", "BXLE" },
+            { "B", "Gamma", "III", "IV", "I", "BXLE" },
+            { "C", "Gamma", "III", "IV", "I", "BXLE" },
+            { "C", "Gamma", "III", "IV", "I", "BAAA" },
+        };
+        for (String[] setting : settings) {
+            Machine fresh = navalMachine();
+            for (Machine m : Arrays.asList(reused, fresh)) {
+                m.insertRotors(Arrays.copyOf(setting, 5));
+                m.setRotors(setting[5]);
+                m.setPlugboard(new Permutation("(YF) (ZH)", UPPER));
+            }
+            assertEquals(msg("fixed rotors", "stale after %s",
+                             String.join(" ", setting)),
+                         fresh.convert(msg), reused.convert(msg));
+        }
+        Machine copy = reused.copy();
+        reused.setRotors("AAAA");
+        copy.setRotors("AAAA");
+        assertEquals("Copy differs", reused.convert(msg), copy.convert(msg));
+    }
+
+    @Test
+    public void checkCopiesIndependent() {
+        Machine m = navalMachine();
+        Machine copy1 = m.copy(), copy2 = m.copy();
+        String[] rotors = { "B", "Beta", "III", "IV", "I" };
+        copy1.insertRotors(rotors);
+        copy2.insertRotors(rotors);
+        copy1.setRotors("AXLE");
+        copy2.setRotors("AAAA");
+        copy1.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        copy2.setPlugboard(new Permutation("", UPPER));
+        String msg = "FROMHISSHOULDERHIAWATHA";
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < msg.length(); i += 1) {
+            result.append(copy1.convert(msg.substring(i, i + 1)));
+            copy2.convert(msg.substring(i, i + 1));
+        }
+        assertEquals("Copies share state", "QVPQSOKOILPUBKJZPISFXDW",
+                     result.toString());
+    }
+
+    @Test
+    public void checkSnapshot() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String name : Arrays.asList("I", "II", "III")) {
+            rotors.add(new MovingRotor(name,
+                    new Permutation(NAVALA.get(name), UPPER), "Q"));
+        }
+        rotors.add(new FixedRotor("Beta",
+                new Permutation(NAVALA.get("Beta"), UPPER)));
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        Machine m1 = new Machine(UPPER, 5, 3, rotors),
+            m2 = new Machine(UPPER, 5, 3, rotors);
+        for (Machine m : Arrays.asList(m1, m2)) {
+            m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+            m.setPlugboard(new Permutation("(AZ)", UPPER));
+        }
+        m1.setRotors("ABCD");
+        m2.setRotors("ZZZZ");
+        String half = m1.convert("HELLOWORLD");
+        Machine snapshot = m1.copy();
+        m2.convert("SOMETHINGELSE");
+        String rest = m1.convert(UPPER_STRING);
+        assertEquals("Snapshot lost state", rest,
+                     snapshot.convert(UPPER_STRING));
+        m1.setRotors("ABCD");
+        assertEquals("Machines from one config share rotors",
+                     half + rest, m1.convert("HELLOWORLD" + UPPER_STRING));
+    }
+
+    @Test
+    public void checkRings() {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        m.setRotors("AAAA");
+        String plain = m.convert("HELLO");
+        m.stellungSet("BBBB");
+        m.setRotors("BBBB");
+        assertEquals("Ring and setting do not cancel", plain,
+                     m.convert("HELLO"));
+        m.stellungSet("AM");
+        m.setRotors("AXLE");
+        String ringed = m.convert(UPPER_STRING);
+        m.stellungSet("AM");
+        m.setRotors("AXLE");
+        assertEquals("Ring settings accumulate", ringed,
+                     m.convert(UPPER_STRING));
+        m.stellungSet("");
+        m.setRotors("AAAA");
+        assertEquals("Ring settings persist", plain, m.convert("HELLO"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTooManyRings() {
+        Machine m = navalMachine();
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.stellungSet("AAAAA");
+    }
+
+    @Test
+    public void checkInsertErrors() {
+        String[][] bad = {
+            { "B", "Beta", "I", "I", "III" },
+            { "B", "Beta", "I", "II", "B" },
+            { "I", "Beta", "II", "III", "IV" },
+            { "B", "I", "II", "III", "IV" },
+            { "B", "Beta", "Gamma", "II", "III" },
+            { "B", "Beta", "I", "II", "IX" },
+            { "A", "Beta", "I", "II", "III" },
+        };
+        for (String[] rotors : bad) {
+            Machine m = navalMachine();
+            try {
+                m.insertRotors(rotors);
+                fail(msg("insert", "accepted %s", Arrays.toString(rotors)));
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test
+    public void checkManyRotors() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        for (int i = 0; i < 150; i += 1) {
+            rotors.add(new MovingRotor("R" + i,
+                    new Permutation(NAVALA.get("I"), UPPER), "Q"));
+        }
+        Machine m = new Machine(UPPER, 4, 3, rotors);
+        m.insertRotors(new String[] { "B", "R1", "R64", "R129" });
+        for (String[] rotors2 : new String[][] {
+                { "B", "R64", "R1", "R64" }, { "B", "R129", "R0", "R129" } }) {
+            try {
+                m.insertRotors(rotors2);
+                fail(msg("insert", "accepted %s", Arrays.toString(rotors2)));
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRepeatedAvailable() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        for (int i = 0; i < 3; i += 1) {
+            rotors.add(new MovingRotor("I",
+                    new Permutation(NAVALA.get("I"), UPPER), "Q"));
+        }
+        new Machine(UPPER, 3, 2, rotors);
+    }
+
+    @Test
+    public void checkLazyCatalog() throws IOException {
+        StringBuilder catalog = new StringBuilder(new String(
+                Files.readAllBytes(new File(CORRECT, "default.conf")
+                                   .toPath())));
+        for (int i = 0; i < 5000; i += 1) {
+            catalog.append(" X").append(i).append(" M").append(i % 26 == 0
+                                                             ? "" : "Q")
+                .append(" ").append(NAVALA.get("I")).append("\n");
+        }
+        catalog.append(" BAD N (AB)\n   (AC)\n");
+        File config = File.createTempFile("enigma", ".conf");
+        config.deleteOnExit();
+        Files.write(config.toPath(), catalog.toString().getBytes());
+        Machine m = new Main(new String[] { config.getPath() }).readConfig();
+        RotorRegistry registry = m.registry();
+        assertEquals("Wrong catalog size", 5013, registry.size());
+        assertEquals("Compiled rotors before use", 0, registry.compiled());
+        m.insertRotors(new String[] { "B", "Beta", "III", "IV", "X27" });
+        m.setRotors("AXLE");
+        m.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER));
+        assertEquals("Wrong conversion", "QVPQSOKOILPUBKJZPISFXDW",
+                     m.convert("FROMHISSHOULDERHIAWATHA"));
+        assertEquals("Compiled unused rotors", 5, registry.compiled());
+        try {
+            m.insertRotors(new String[] { "B", "BAD", "III", "IV", "I" });
+            fail("Used a bad rotor");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void checkSeek() {
+        Random random = new Random(61);
+        for (int pawls = 0; pawls <= 5; pawls += 1) {
+            for (int trial = 0; trial < 20; trial += 1) {
+                Machine stepped = manyNotchMachine(pawls),
+                    seeking = manyNotchMachine(pawls);
+                String setting = "";
+                for (int i = 0; i < 5; i += 1) {
+                    setting += UPPER_STRING.charAt(random.nextInt(26));
+                }
+                for (Machine m : Arrays.asList(stepped, seeking)) {
+                    m.insertRotors(new String[] {
+                        "B", "Beta", "Gamma", "I", "VI", "VIII" });
+                    m.setRotors(setting);
+                    m.setPlugboard(new Permutation("(AB)", UPPER));
+                }
+                int n = random.nextInt(20000);
+                stepped.convert("A".repeat(n));
+                seeking.seek(n);
+                assertEquals(msg("seek", "%d pawls, %s + %d", pawls,
+                                 setting, n),
+                             stepped.convert(UPPER_STRING),
+                             seeking.convert(UPPER_STRING));
+            }
+        }
+    }
+
+    @Test
+    public void checkParallelConvert() {
+        char[] msg = UPPER_STRING.repeat(2000).toCharArray();
+        Machine sequential = navalMachine(), parallel = navalMachine();
+        for (Machine m : Arrays.asList(sequential, parallel)) {
+            m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+            m.setRotors("AADU");
+            m.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        }
+        char[] expected = new char[msg.length], result = new char[msg.length];
+        sequential.convert(msg, 0, msg.length, expected);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        parallel.convert(msg, 0, msg.length, result, pool);
+        pool.shutdown();
+        assertEquals("Parallel conversion differs", new String(expected),
+                     new String(result));
+        assertEquals("Parallel conversion left wrong state",
+                     sequential.convert(UPPER_STRING),
+                     parallel.convert(UPPER_STRING));
+    }
+
+    @Test
+    public void checkCorrectCorpus() throws IOException {
+        File[] inputs = CORRECT.listFiles((dir, name) -> name.endsWith(".in"));
+        assertNotNull("No corpus at " + CORRECT, inputs);
+        for (String[] options : MAIN_MODES) {
+            for (File input : inputs) {
+                String base = input.getPath();
+                base = base.substring(0, base.length() - ".in".length());
+                File output = File.createTempFile("enigma", ".out");
+                output.deleteOnExit();
+                ArrayList<String> args = new ArrayList<>(Arrays.asList(
+                        new File(CORRECT, "default.conf").getPath(),
+                        input.getPath(), output.getPath()));
+                args.addAll(Arrays.asList(options));
+                try {
+                    new Main(args.toArray(new String[0])).process();
+                } catch (EnigmaException excp) {
+                    fail(msg(input.getName(), "error with %s: %s", args,
+                             excp.getMessage()));
+                }
+                assertEquals(msg(input.getName(),
+                                 "output differs with %s", args),
+                             normalized(new File(base + ".out")),
+                             normalized(output));
+            }
+        }
+    }
+
+}
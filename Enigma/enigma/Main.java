@@ -1,12 +1,34 @@
 package enigma;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -25,29 +47,98 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  Options of the form --NAME or --NAME=VALUE may appear anywhere
+     *  in ARGS and do not count towards its length:
+     *    --compiled[=MB]  Run the machine in compiled mode (see
+     *                     Machine.setCompiledLimit) with up to MB
+     *                     megabytes of tables (default 64).
+     *    --parallel[=N]   Encipher the messages following each setting
+     *                     line independently, on N threads (default: one
+     *                     per processor).  See processParallel.
+     *    --crib=TEXT      Instead of enciphering, read ciphertext from the
+     *                     input and search for the keys under which TEXT
+     *                     enciphers to part of it, writing each as a
+     *                     setting line.  Uses --parallel's threads (by
+     *                     default, all processors) and --compiled's
+     *                     limit.  See processSearch.
+     *    --at=N           With --crib, try the crib only where it would
+     *                     start at letter N (from 1) of the ciphertext.
+     *    --rings          With --crib, search ring settings too.
+     *    --keys=N         With --crib, stop after finding N keys.
+     *    --attack         Instead of enciphering, read ciphertext from the
+     *                     input and hill-climb towards its key, writing
+     *                     the best key found as a setting line followed
+     *                     by the decryption.  Uses --parallel's threads
+     *                     (by default, all processors).  See
+     *                     processAttack.
+     *    --ngrams=FILE    With --attack, score plugboards by the n-gram
+     *                     counts in FILE (lines of NGRAM COUNT).
+     *    --evaluations=N  With --attack, stop after N scorings.
+     *    --seconds=N      With --attack, stop after N seconds.
+     *    --cache          Read the configuration from its compiled form
+     *                     in ARGS[0].cache when that was made from the
+     *                     configuration's current contents, and
+     *                     otherwise write it there.  See ConfigCache.
+     *    --metrics[=FILE] When done, write counts of what was processed
+     *                     and the time spent in each phase, as JSON, to
+     *                     FILE (default: the standard error).  See
+     *                     Metrics.
+     *    --serve[=ADDR]   Instead of reading input, load the configuration
+     *                     once and serve connections on ADDR: a port on
+     *                     the loopback interface if it is a number
+     *                     (default 6161), and otherwise the path of a
+     *                     Unix-domain socket.  Each connection is read
+     *                     and answered as an input file would be (see
+     *                     Client), until the server is killed.  Takes no
+     *                     file arguments.  See processServe. */
     public static void main(String... args) throws IOException {
+        Main main = null;
         try {
-            new Main(args).process();
+            main = new Main(args);
+            main.process();
+            main.writeMetrics();
             return;
         } catch (EnigmaException excp) {
             System.err.printf("Error: %s%n", excp.getMessage());
         }
+        if (main != null) {
+            main.writeMetrics();
+        }
         System.exit(1);
     }
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        args = readOptions(args);
+        _metrics = _options.containsKey("metrics") ? new Metrics(true)
+            : Metrics.DISABLED;
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _configName = args[0];
+        _config = getReader(args[0]);
+
+        if (_options.containsKey("crib") && _options.get("crib").isEmpty()) {
+            throw error("--crib needs a crib");
+        }
+        if (_options.containsKey("serve")) {
+            if (args.length != 1 || _options.containsKey("parallel")
+                    || _options.containsKey("crib")
+                    || _options.containsKey("attack")) {
+                throw error("--serve needs no input or output files, "
+                            + "and no --parallel, --crib or --attack");
+            }
+            _serveAddress = address(_options.get("serve"));
+            return;
+        }
 
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = getReader(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new BufferedReader(new InputStreamReader(System.in));
         }
 
         if (args.length > 2) {
@@ -57,10 +148,66 @@ public final class Main {
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Record the options among ARGS in _options, mapping each option's
+     *  name to its value ("" if it has none), and return the remaining
+     *  arguments in order. */
+    private String[] readOptions(String[] args) {
+        ArrayList<String> rest = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+                if (!OPTIONS.contains(name)) {
+                    throw error("unknown option %s", arg);
+                }
+                _options.put(name, eq < 0 ? "" : arg.substring(eq + 1));
+            } else {
+                rest.add(arg);
+            }
+        }
+        return rest.toArray(new String[rest.size()]);
+    }
+
+    /** Return the value of option NAME as a positive integer, or DEFAULT
+     *  if it was given without a value. */
+    private long intOption(String name, long dflt) {
+        String value = _options.get(name);
+        if (value.isEmpty()) {
+            return dflt;
+        }
+        try {
+            long result = Long.parseLong(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through to the error below. */
+        }
+        throw error("bad value for --%s: %s", name, value);
+    }
+
+    /** Write my metrics as --metrics directs, if it was given and they
+     *  have not been written already. */
+    private synchronized void writeMetrics() {
+        if (!_metrics.enabled() || _metricsWritten) {
+            return;
+        }
+        _metricsWritten = true;
+        String name = _options.get("metrics");
+        if (name.isEmpty()) {
+            System.err.print(_metrics.toJson());
+        } else {
+            PrintStream out = getOutput(name);
+            out.print(_metrics.toJson());
+            out.close();
+        }
+    }
+
+    /** Return a BufferedReader reading from the file named NAME. */
+    private BufferedReader getReader(String name) {
         try {
-            return new Scanner(new File(name));
+            return new BufferedReader(new InputStreamReader(
+                    new FileInputStream(name)));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -78,55 +225,472 @@ public final class Main {
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() throws IOException {
-        Machine m = readConfig();
-        Scanner processScan = _input;
-        int configured = 0;
-        while (processScan.hasNextLine()) {
-            String line = processScan.nextLine();
-            String strPat = "\\*([\\s\\t]*[\\w]+)+([\\s\\t]*"
-                    + "\\([\\u0000-\\u007F[^\\*\\(\\)]]+\\))*";
-            String pat2 = "\\*([\\s\\t]*[\\u0000-\\u007F[^\\*\\(\\)]]+)+";
-            Pattern p = Pattern.compile(strPat), p2 = Pattern.compile(pat2);
-            Matcher mat = p.matcher(line), mat2 = p2.matcher(line);
-            if (mat.matches() || mat2.matches()) {
-                setUp(m, line);
-                configured = 1;
-            } else if (configured == 1) {
-                String msg = line;
-                msg = msg.replaceAll("\\s+|\\t+", "");
-                String out = m.convert(msg);
-                printMessageLine(out);
-            } else {
+    void process() throws IOException {
+        long start = _metrics.start();
+        Machine m = _options.containsKey("cache") ? cachedConfig()
+            : readConfig();
+        _metrics.stop(Metrics.Phase.CONFIG, start);
+        long compiledLimit = 0;
+        if (_options.containsKey("compiled")) {
+            compiledLimit = intOption("compiled", DEFAULT_COMPILED_MB)
+                * MEGABYTE;
+            m.setCompiledLimit(compiledLimit);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (_options.containsKey("parallel")) {
+            threads = (int) intOption("parallel", threads);
+        }
+        if (_options.containsKey("serve")) {
+            processServe(m);
+            return;
+        }
+        if (_options.containsKey("crib")) {
+            processSearch(m, compiledLimit, threads);
+            return;
+        }
+        if (_options.containsKey("attack")) {
+            processAttack(m, threads);
+            return;
+        }
+        if (_options.containsKey("parallel")) {
+            processParallel(m, threads);
+            return;
+        }
+        boolean configured = false;
+        String line;
+        GroupWriter out = new GroupWriter(new OutputStreamWriter(_output));
+        try {
+            while ((line = _input.readLine()) != null) {
+                if (isSettingLine(line)) {
+                    setUp(m, line);
+                    configured = true;
+                } else if (configured) {
+                    int length = readMessage(line);
+                    convertMessage(m, _message, length, out, _metrics);
+                } else {
+                    throw new EnigmaException("Message without machine "
+                            + "configuration/wrong setting line.");
+                }
+            }
+        } finally {
+            start = _metrics.start();
+            out.flush();
+            _metrics.stop(Metrics.Phase.OUTPUT, start);
+        }
+    }
+
+    /** Apply copies of M to the messages in _input, sending the results
+     *  to _output as process does, but handling each setting line and
+     *  the messages up to the next one as an independent segment.
+     *  Segments are enciphered by THREADS worker threads, a batch at a
+     *  time, and written out in their original order.  Each segment
+     *  starts from a fresh copy of M, so its setting line should give
+     *  the rotor positions and plugboard in full.  When a segment fails,
+     *  its output up to the failure is written before the error is
+     *  reported, and nothing after it is written. */
+    private void processParallel(Machine m, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            String line = _input.readLine();
+            if (line != null && !isSettingLine(line)) {
                 throw new EnigmaException("Message without machine "
                         + "configuration/wrong setting line.");
             }
+            ArrayList<Segment> batch = new ArrayList<Segment>();
+            while (line != null) {
+                ArrayList<String> lines = new ArrayList<String>();
+                lines.add(line);
+                while ((line = _input.readLine()) != null
+                       && !isSettingLine(line)) {
+                    lines.add(line);
+                }
+                Segment segment = new Segment(m.copy(), lines);
+                pool.execute(segment);
+                batch.add(segment);
+                if (batch.size() == threads * SEGMENTS_PER_THREAD
+                        || line == null) {
+                    for (Segment done : batch) {
+                        done.join();
+                        _output.append(done.output());
+                        if (done.error() != null) {
+                            throw done.error();
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    /** Return this pattern.
-     *
-     * @return String of Regex pattern for a Rotor.
-     */
-    String getPat() {
-        return "[\\s\\t]*([\\u0000-\\u007F[^\\*\\(\\)]])*[\\s\\t]+"
-                + "([MNmnrR][\\w]*)[\\s\\t]*(\\s*\\([\\w\\.]+\\))+"
-                + "[\\n\\r]?([\\s\\t]*\\([\\w]+\\)[\\s\\t]*)*[\\s\\t]*";
+    /** Serve copies of M on _serveAddress until killed.  Each connection
+     *  is read and answered as process reads _input and writes _output,
+     *  on a thread of its own with its own copy of M, except that the
+     *  output of each message line is flushed as soon as it is ready,
+     *  and an error ends only its own connection, after being sent back
+     *  as a line starting with '*', which no line of output can.  The
+     *  latency of each message line, from reading it (or the setting
+     *  line before it) to flushing its output, is recorded, and the
+     *  rate of requests and their median and 99th-percentile latencies
+     *  go to the standard error when the server stops, followed by the
+     *  metrics if --metrics was given. */
+    private void processServe(Machine m) throws IOException {
+        boolean unix = _serveAddress instanceof UnixDomainSocketAddress;
+        ServerSocketChannel server = ServerSocketChannel.open(
+                unix ? StandardProtocolFamily.UNIX
+                : StandardProtocolFamily.INET);
+        try {
+            server.bind(_serveAddress);
+        } catch (IOException excp) {
+            server.close();
+            throw error("could not listen on %s", _serveAddress);
+        }
+        Latencies latencies = new Latencies();
+        long start = System.nanoTime();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.err.println(latencies.summary(System.nanoTime() - start));
+            writeMetrics();
+            if (unix) {
+                new File(_serveAddress.toString()).delete();
+            }
+        }));
+        System.err.printf("Listening on %s%n", server.getLocalAddress());
+        ExecutorService pool = Executors.newCachedThreadPool();
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                pool.execute(new Connection(m.copy(), channel, latencies));
+            }
+        } finally {
+            pool.shutdownNow();
+            server.close();
+        }
     }
 
-    /** Check for redundancies in all the rotors
-     * available. Code outsourced from
-     * StackOverflow.
-     */
-    void checkRedundant() {
-        for (int i = 0; i < allRotors.size(); i++) {
-            for (int j = i + 1; j < allRotors.size(); j++) {
-                if (allRotors.get(i).name().compareTo(allRotors.get(j).name())
-                        == 0) {
-                    throw new EnigmaException("Rotors cannot be repeated.");
+    /** Return the address named by SPEC, as for --serve: a port on the
+     *  loopback interface if SPEC is a number (DEFAULT_PORT if it is
+     *  empty), and otherwise the path of a Unix-domain socket. */
+    static SocketAddress address(String spec) {
+        if (spec.isEmpty()) {
+            spec = Integer.toString(DEFAULT_PORT);
+        }
+        if (!spec.chars().allMatch(Character::isDigit)) {
+            return UnixDomainSocketAddress.of(spec);
+        }
+        try {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                         Integer.parseInt(spec));
+        } catch (IllegalArgumentException excp) {
+            throw error("bad port: %s", spec);
+        }
+    }
+
+    /** Read ciphertext from _input and write to _output, as setting
+     *  lines, the keys of machines configured like M under which the
+     *  crib given by --crib enciphers to it at some offset where no
+     *  letter of the crib lies over the same letter of ciphertext (or
+     *  only at the one given by --at; see KeySearch).  The search runs
+     *  on THREADS threads, with machines in compiled mode if
+     *  COMPILEDLIMIT is positive, and reports its progress and finally
+     *  its rate on the standard error.  The input must not contain
+     *  setting lines; the plugboard is taken as known, and is KeySearch's
+     *  default, the empty one. */
+    private void processSearch(Machine m, long compiledLimit, int threads)
+        throws IOException {
+        String cipher = readCiphertext(), crib = _options.get("crib");
+        int[] offsets = KeySearch.cribOffsets(cipher, crib);
+        if (_options.containsKey("at")) {
+            long at = intOption("at", 1) - 1;
+            int start = (int) Math.min(at, cipher.length());
+            if (Arrays.binarySearch(offsets, start) < 0) {
+                throw error("crib cannot start at letter %d", at + 1);
+            }
+            offsets = new int[] { (int) at };
+        }
+        KeySearch search = new KeySearch(m, cipher, crib, offsets,
+                                         _options.containsKey("rings"));
+        search.setCompiledLimit(compiledLimit);
+        if (_options.containsKey("keys")) {
+            search.setMaxResults((int) Math.min(Integer.MAX_VALUE,
+                                                intOption("keys", 1)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            search.start(pool);
+            while (!search.await(PROGRESS_INTERVAL)) {
+                System.err.printf("Searched %d of %d keys%n",
+                                  search.keysTested(), search.keysTotal());
+            }
+        } catch (InterruptedException excp) {
+            search.cancel();
+            throw error("search interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+        TreeSet<String> keys = new TreeSet<String>();
+        for (KeySearch.Key key : search.results()) {
+            keys.add(key.toString());
+        }
+        for (String key : keys) {
+            _output.println(key);
+        }
+        System.err.printf("Searched %d keys at %.0f keys/s per thread%n",
+                          search.keysTested(),
+                          search.keysPerSecondPerThread());
+    }
+
+    /** Read ciphertext from _input and write to _output the key of a
+     *  machine configured like M found by a ciphertext-only attack (see
+     *  CiphertextAttack) on THREADS threads, as a setting line, followed
+     *  by the ciphertext deciphered with it.  However long the input,
+     *  the attack scores only a window from its start, whose size
+     *  depends on the alphabet's.  The attack's budget and rate go to
+     *  the standard error.  The input must not contain setting lines. */
+    private void processAttack(Machine m, int threads) throws IOException {
+        String cipher = readCiphertext();
+        CiphertextAttack attack = new CiphertextAttack(m, cipher);
+        if (_options.containsKey("ngrams")) {
+            attack.setNgrams(CiphertextAttack.Ngrams.read(
+                    getReader(_options.get("ngrams")), _alphabet));
+        }
+        long evaluations = 0, seconds = 0;
+        if (_options.containsKey("evaluations")) {
+            evaluations = intOption("evaluations", 1);
+        }
+        if (_options.containsKey("seconds")) {
+            seconds = intOption("seconds", 1);
+        }
+        if (evaluations > 0 || seconds > 0) {
+            attack.setBudget(evaluations, seconds * MILLIS_PER_SECOND);
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        CiphertextAttack.Result best;
+        try {
+            best = attack.run(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d evaluations in %d restarts, %.1f s: "
+                          + "%.0f evaluations/s per thread%n",
+                          attack.evaluations(), attack.restarts(), elapsed,
+                          attack.evaluations() / elapsed / threads);
+        if (best == null) {
+            throw error("attack budget too small");
+        }
+        setUp(m, best.toString());
+        _output.println(best);
+        GroupWriter out = new GroupWriter(new OutputStreamWriter(_output));
+        convertMessage(m, cipher.toCharArray(), cipher.length(), out,
+                       _metrics);
+        out.flush();
+    }
+
+    /** Return the message characters of all of _input, which must not
+     *  contain setting lines. */
+    private String readCiphertext() throws IOException {
+        StringBuilder text = new StringBuilder();
+        String line;
+        while ((line = _input.readLine()) != null) {
+            if (isSettingLine(line)) {
+                throw error("ciphertext input must not have setting lines");
+            }
+            int length = readMessage(line);
+            text.append(_message, 0, length);
+        }
+        return text.toString();
+    }
+
+    /** One setting line and the messages that follow it, enciphered on a
+     *  machine of its own by processParallel. */
+    private class Segment extends RecursiveAction {
+
+        /** A segment whose setting line is LINES[0] and whose messages
+         *  are the rest of LINES, to be enciphered on MACHINE. */
+        Segment(Machine machine, List<String> lines) {
+            _machine = machine;
+            _lines = lines;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                try {
+                    setUp(_machine, _lines.get(0));
+                    char[] message = new char[INITIAL_MESSAGE_SIZE];
+                    for (String line : _lines.subList(1, _lines.size())) {
+                        if (message.length < line.length()) {
+                            message = new char[line.length()];
+                        }
+                        int length = compact(line, message);
+                        convertMessage(_machine, message, length, _result,
+                                       _metrics);
+                    }
+                } catch (EnigmaException excp) {
+                    _error = excp;
+                }
+                _result.flush();
+            } catch (IOException excp) {
+                throw new UncheckedIOException(excp);
+            }
+            _lines = null;
+        }
+
+        /** Return my formatted output, up to any error. */
+        CharSequence output() {
+            return _text.getBuffer();
+        }
+
+        /** Return the error that stopped me, or null if none did. */
+        EnigmaException error() {
+            return _error;
+        }
+
+        /** Machine on which I am enciphered. */
+        private final Machine _machine;
+
+        /** My setting line and messages, until I have been enciphered. */
+        private List<String> _lines;
+
+        /** My formatted output. */
+        private final StringWriter _text = new StringWriter();
+
+        /** Formats my output into _text. */
+        private final GroupWriter _result = new GroupWriter(_text);
+
+        /** The error that stopped me, if any. */
+        private EnigmaException _error;
+    }
+
+    /** One connection to processServe, served on a machine of its own. */
+    private class Connection implements Runnable {
+
+        /** A connection on CHANNEL, served on MACHINE, whose latencies
+         *  are recorded in LATENCIES. */
+        Connection(Machine machine, SocketChannel channel,
+                   Latencies latencies) {
+            _machine = machine;
+            _channel = channel;
+            _latencies = latencies;
+        }
+
+        @Override
+        public void run() {
+            try (SocketChannel channel = _channel) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        Channels.newInputStream(channel)));
+                Writer writer = new OutputStreamWriter(
+                        Channels.newOutputStream(channel));
+                GroupWriter out = new GroupWriter(writer);
+                try {
+                    serve(in, out);
+                } catch (EnigmaException excp) {
+                    out.flush();
+                    writer.write("* Error: " + excp.getMessage() + "\n");
+                    writer.flush();
+                }
+            } catch (IOException excp) {
+                /* The client has gone; there is no one to tell. */
+            }
+        }
+
+        /** Answer the lines read from IN on OUT, as process does. */
+        private void serve(BufferedReader in, GroupWriter out)
+            throws IOException {
+            boolean configured = false;
+            char[] message = new char[INITIAL_MESSAGE_SIZE];
+            long start = -1;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (start < 0) {
+                    start = System.nanoTime();
+                }
+                if (isSettingLine(line)) {
+                    setUp(_machine, line);
+                    configured = true;
+                } else if (configured) {
+                    if (message.length < line.length()) {
+                        message = new char[line.length()];
+                    }
+                    int length = compact(line, message);
+                    convertMessage(_machine, message, length, out, _metrics);
+                    out.flush();
+                    _latencies.record(System.nanoTime() - start);
+                    start = -1;
+                } else {
+                    throw new EnigmaException("Message without machine "
+                            + "configuration/wrong setting line.");
+                }
+            }
+            out.flush();
+        }
+
+        /** Machine on which I am served. */
+        private final Machine _machine;
+
+        /** Channel to my client. */
+        private final SocketChannel _channel;
+
+        /** Where the latencies of my message lines are recorded. */
+        private final Latencies _latencies;
+    }
+
+    /** Return true iff LINE is a setting line: an asterisk followed by
+     *  at least one more character.  This is exactly the set of lines
+     *  the setting-line regular expressions used to accept. */
+    static boolean isSettingLine(String line) {
+        return line.length() > 1 && line.charAt(0) == '*';
+    }
+
+    /** Return the whitespace-separated tokens of LINE, splitting where
+     *  a Scanner with its default delimiter would. */
+    static String[] tokenize(String line) {
+        ArrayList<String> tokens = new ArrayList<String>();
+        int start = -1;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || Character.isWhitespace(line.charAt(i))) {
+                if (start >= 0) {
+                    tokens.add(line.substring(start, i));
+                    start = -1;
                 }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    /** Copy the non-whitespace characters of LINE into _message,
+     *  growing it if need be, and return how many there were. */
+    private int readMessage(String line) {
+        if (_message.length < line.length()) {
+            _message = new char[Math.max(line.length(), 2 * _message.length)];
+        }
+        return compact(line, _message);
+    }
+
+    /** Copy the non-whitespace characters of LINE into BUFFER, which
+     *  must be at least as long as LINE, and return how many there
+     *  were. */
+    private static int compact(String line, char[] buffer) {
+        int length = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (!isBlank(ch)) {
+                buffer[length] = ch;
+                length++;
             }
         }
+        return length;
+    }
+
+    /** Return true iff CH is one of the whitespace characters matched by
+     *  the regular expression \\s. */
+    private static boolean isBlank(char ch) {
+        return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B'
+            || ch == '\f' || ch == '\r';
     }
 
     /** Fill the list provided.
@@ -157,15 +721,15 @@ public final class Main {
     /** Return an Enigma machine configured from
      * the contents of configuration
      *  file _config. */
-    private Machine readConfig() {
+    Machine readConfig() {
         try {
             ArrayList<Integer> rotors = new ArrayList<Integer>();
             int numPawls = 0;
             int totRotors = 0;
             String alpha = "([\\u0000-\\u007F[^\\*\\(\\)]])*";
             Pattern pAlpha = Pattern.compile(alpha);
-            if (_config.hasNextLine()) {
-                String inp = _config.nextLine();
+            String inp = _config.readLine();
+            if (inp != null) {
                 Matcher mat = pAlpha.matcher(inp);
                 if (mat.matches()) {
                     _alphabet = new Alphabet(inp);
@@ -173,55 +737,152 @@ public final class Main {
                     throw new EnigmaException("Bad alphabet");
                 }
             }
-            if (_config.hasNextLine()) {
-                _config.useDelimiter("\\s|\\t");
-                fillList(rotors, new Scanner(_config.nextLine()));
+            inp = _config.readLine();
+            if (inp != null) {
+                fillList(rotors, new Scanner(inp));
                 checkRotornums(rotors);
                 totRotors = rotors.get(0);
                 numPawls = rotors.get(1);
             }
-            String rotorPat = getPat();
-            String partialPat = "[\\s\\t]*([\\s\\t]*\\([\\w\\?\\-\\.]+\\))*";
-            Pattern p1 = Pattern.compile(rotorPat);
-            Pattern p2 = Pattern.compile(partialPat);
-            ArrayList<String> rotorconfig = new ArrayList<String>();
-            while (_config.hasNextLine()) {
-                String rot = _config.nextLine();
-                Matcher matRotor = p1.matcher(rot), mat2 = p2.matcher(rot);
-                if (matRotor.matches()) {
-                    rotorconfig.add(rot);
-                } else if (mat2.matches()) {
-                    String r = rotorconfig.get(rotorconfig.size() - 1);
-                    r += rot;
-                    rotorconfig.remove(rotorconfig.size() - 1);
-                    rotorconfig.add(r);
-                } else {
+            ArrayList<String> names = new ArrayList<String>(),
+                definitions = new ArrayList<String>();
+            byte[] kinds = new byte[INITIAL_CATALOG_SIZE];
+            StringBuilder definition = null;
+            String line;
+            while ((line = _config.readLine()) != null) {
+                int start = skipBlanks(line, 0);
+                if (start == line.length()) {
+                    continue;
+                } else if (line.charAt(start) == '(') {
+                    if (definition == null || !cycles(line, start)) {
+                        throw new EnigmaException("Bad rotor.");
+                    }
+                    definition.append(' ').append(line);
+                    continue;
+                }
+                if (definition != null) {
+                    definitions.add(definition.toString());
+                }
+                int nameEnd = skipToBlank(line, start),
+                    typeStart = skipBlanks(line, nameEnd),
+                    typeEnd = skipToBlank(line, typeStart);
+                byte kind = rotorKind(line.substring(typeStart, typeEnd));
+                if (kind < 0 || !cycles(line, typeEnd)) {
                     throw new EnigmaException("Bad rotor.");
                 }
-            }
-            Iterator<String> rotIt = rotorconfig.iterator();
-            while (rotIt.hasNext()) {
-                Rotor r = readRotor(rotIt.next());
-                if (r instanceof Reflector
-                        && !((Reflector) r).isDerangement()) {
-                    throw new EnigmaException(" Reflector not a derangement.");
+                if (names.size() == kinds.length) {
+                    kinds = Arrays.copyOf(kinds, 2 * kinds.length);
                 }
-                allRotors.add(r);
+                kinds[names.size()] = kind;
+                names.add(line.substring(start, nameEnd));
+                definition = new StringBuilder(line);
             }
-            checkRedundant();
-            if (allRotors.size() < totRotors) {
+            if (definition != null) {
+                definitions.add(definition.toString());
+            }
+            if (names.size() < totRotors) {
                 throw new EnigmaException("Bad rotor num.");
             }
-            return new Machine(_alphabet, totRotors, numPawls, allRotors);
+            Alphabet alphabet = _alphabet;
+            RotorRegistry registry = new RotorRegistry(
+                    names, kinds, definitions,
+                    text -> readRotor(text, alphabet));
+            return new Machine(_alphabet, totRotors, numPawls, registry);
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
+        } catch (IOException excp) {
+            throw error("could not read %s", _configName);
+        }
+    }
+
+    /** Return the kind (see RotorRegistry) of rotor described by the
+     *  type field TYPE of a rotor's definition, or -1 if it is not
+     *  one. */
+    private static byte rotorKind(String type) {
+        if (type.isEmpty()) {
+            return -1;
+        }
+        switch (type.charAt(0)) {
+        case 'M': case 'm':
+            return RotorRegistry.MOVING;
+        case 'N': case 'n':
+            return type.length() == 1 ? RotorRegistry.FIXED : -1;
+        case 'R': case 'r':
+            return type.length() == 1 ? RotorRegistry.REFLECTOR : -1;
+        default:
+            return -1;
+        }
+    }
+
+    /** Return true iff LINE from index START on is a sequence of cycles,
+     *  each a parenthesized run of characters none of which is a blank
+     *  or parenthesis, separated by any blanks.  Whether the characters
+     *  are in the alphabet and form a permutation is left to the
+     *  Permutation made from them. */
+    private static boolean cycles(String line, int start) {
+        int i = skipBlanks(line, start);
+        while (i < line.length()) {
+            if (line.charAt(i) != '(') {
+                return false;
+            }
+            int end = i + 1;
+            while (end < line.length() && line.charAt(end) != ')'
+                   && line.charAt(end) != '('
+                   && !isBlank(line.charAt(end))) {
+                end += 1;
+            }
+            if (end == i + 1 || end == line.length()
+                    || line.charAt(end) != ')') {
+                return false;
+            }
+            i = skipBlanks(line, end + 1);
+        }
+        return true;
+    }
+
+    /** Return the index of the first character of LINE at or after START
+     *  that is not a blank, or its length if there is none. */
+    private static int skipBlanks(String line, int start) {
+        while (start < line.length() && isBlank(line.charAt(start))) {
+            start += 1;
         }
+        return start;
     }
 
-    /** Return a rotor, reading its description from _config.
+    /** Return the index of the first blank of LINE at or after START, or
+     *  its length if there is none. */
+    private static int skipToBlank(String line, int start) {
+        while (start < line.length() && !isBlank(line.charAt(start))) {
+            start += 1;
+        }
+        return start;
+    }
+
+    /** Return a machine configured from the cache of configuration file
+     *  _configName, if it is current, and otherwise from _config, in
+     *  which case the cache is brought up to date. */
+    private Machine cachedConfig() {
+        ConfigCache cache;
+        try {
+            cache = new ConfigCache(new File(_configName));
+        } catch (IOException excp) {
+            throw error("could not read %s", _configName);
+        }
+        Machine result = cache.read();
+        if (result != null) {
+            _alphabet = result.alphabet();
+            return result;
+        }
+        result = readConfig();
+        cache.write(result);
+        return result;
+    }
+
+    /** Return a rotor over ALPHABET, reading its description from
+     *  _config or a ConfigCache.
      * @param s - String of rotor with complete description.
      * */
-    private Rotor readRotor(String s) {
+    static Rotor readRotor(String s, Alphabet alphabet) {
         try {
             String name = "";
             StringBuilder info = new StringBuilder();
@@ -247,14 +908,14 @@ public final class Main {
             String rotorPerm = perm.toString();
             if (info.charAt(0) == 'M' || info.charAt(0) == 'm') {
                 return new MovingRotor(name,
-                        new Permutation(rotorPerm, _alphabet),
+                        new Permutation(rotorPerm, alphabet),
                         info.substring(1));
             } else if (infoS.compareTo("R") == 0 || infoS.compareTo("r") == 0) {
                 return new Reflector(name,
-                        new Permutation(rotorPerm, _alphabet));
+                        new Permutation(rotorPerm, alphabet));
             } else if (infoS.compareTo("N") == 0 || infoS.compareTo("n") == 0) {
                 return new FixedRotor(name,
-                        new Permutation(rotorPerm, _alphabet));
+                        new Permutation(rotorPerm, alphabet));
             } else {
                 throw new EnigmaException("Bad rotor type.");
             }
@@ -266,87 +927,146 @@ public final class Main {
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
     private void setUp(Machine M, String settings) {
-        String setting = "";
+        long start = _metrics.start();
+        String[] tokens = tokenize(settings);
         String[] rotors = new String[M.numRotors()];
-        if (true) {
-            int i = 0;
-            Scanner scanSet = new Scanner(settings);
-            String first = scanSet.next();
-            while (scanSet.hasNext() && i < M.numRotors()) {
-                if (i == 0 && first.length() > 1) {
-                    rotors[i] = first.substring(1);
+        int t = 1;
+        for (int i = 0; t < tokens.length && i < M.numRotors(); i++) {
+            if (i == 0 && tokens[0].length() > 1) {
+                rotors[i] = tokens[0].substring(1);
+            } else {
+                rotors[i] = tokens[t];
+                t++;
+            }
+        }
+        M.insertRotors(rotors);
+        if (t < tokens.length) {
+            String setting = tokens[t];
+            t++;
+            if (setting.codePointCount(0, setting.length())
+                    != M.numRotors() - 1) {
+                throw new EnigmaException("Erroneous setting line.");
+            }
+            StringBuilder pb = new StringBuilder();
+            String stellung = "";
+            if (t < tokens.length) {
+                if (STELLUNG.matcher(tokens[t]).matches()
+                        && tokens[t].codePointCount(0, tokens[t].length())
+                           < M.numRotors()) {
+                    stellung = tokens[t];
                 } else {
-                    rotors[i] = scanSet.next();
+                    pb.append(tokens[t]);
                 }
-                i++;
+                t++;
             }
-            M.insertRotors(rotors);
-            if (scanSet.hasNext()) {
-                String temp = scanSet.next();
-                setting += temp;
-                if (temp.length() != M.numRotors() - 1) {
-                    throw new EnigmaException("Erroneous setting line.");
-                }
-                StringBuilder pb = new StringBuilder();
-                String stellungPat = "[\\w]+";
-                Pattern p = Pattern.compile(stellungPat);
-                if (scanSet.hasNext()) {
-                    String stellung = scanSet.next();
-                    Matcher mat = p.matcher(stellung);
-                    if (mat.matches() && stellung.length() <= M.numRotors()) {
-                        M.stellungSet(stellung);
-                    } else {
-                        pb.append(stellung);
-                    }
-                }
-                M.setRotors(setting);
-                while (scanSet.hasNext()) {
-                    pb.append(" ").append(scanSet.next());
-                }
-                String plugboard = pb.toString();
-                M.setPlugboard(new Permutation(plugboard, _alphabet));
+            M.stellungSet(stellung);
+            M.setRotors(setting);
+            for (; t < tokens.length; t++) {
+                pb.append(" ").append(tokens[t]);
             }
+            M.setPlugboard(new Permutation(pb.toString(), _alphabet));
+        }
+        _metrics.stop(Metrics.Phase.SETUP, start);
+        _metrics.count(Metrics.Counter.SETTING_LINES, 1);
+    }
+
+    /** Convert the first LENGTH characters of MESSAGE with M, and write
+     *  the result to OUT as a line of groups, recording both in METRICS.
+     *  MESSAGE may be overwritten.  If M's alphabet has characters
+     *  outside the Basic Multilingual Plane, whose chars come in pairs,
+     *  the message is converted as a String of code points instead. */
+    private static void convertMessage(Machine m, char[] message, int length,
+                                       GroupWriter out, Metrics metrics)
+        throws IOException {
+        long start = metrics.start();
+        if (m.alphabet().bmp()) {
+            m.convert(message, 0, length, message);
+            start = metrics.lap(Metrics.Phase.CONVERT, start);
+            out.writeLine(message, 0, length);
         } else {
-            throw new EnigmaException("Bad setting.");
+            String result = m.convert(new String(message, 0, length));
+            int[] codePoints = result.codePoints().toArray();
+            start = metrics.lap(Metrics.Phase.CONVERT, start);
+            out.writeLine(codePoints, codePoints.length);
         }
+        metrics.stop(Metrics.Phase.OUTPUT, start);
+        metrics.count(Metrics.Counter.CHARACTERS, length);
+        metrics.count(Metrics.Counter.MESSAGES, 1);
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        int length = msg.length();
-        int groups = length / 5;
-        int point = 0;
+    /** Names of the options accepted on the command line. */
+    private static final List<String> OPTIONS = Arrays.asList("compiled",
+                                                             "parallel",
+                                                             "crib",
+                                                             "at",
+                                                             "rings",
+                                                             "keys",
+                                                             "attack",
+                                                             "ngrams",
+                                                             "evaluations",
+                                                             "seconds",
+                                                             "cache",
+                                                             "metrics",
+                                                             "serve");
 
-        for (int i = 0; i <= groups; i++) {
-            int j = 0;
-            while (j < 5 && point < length) {
+    /** Number of segments per worker thread that processParallel holds
+     *  in memory at once. */
+    private static final int SEGMENTS_PER_THREAD = 4;
 
-                _output.print(msg.charAt(point));
-                point++;
-                j++;
-            }
-            if (i < groups + 1) {
+    /** Milliseconds between progress reports from processSearch. */
+    private static final long PROGRESS_INTERVAL = 1000;
 
-                _output.print(' ');
-            }
-        }
+    /** Default port for --serve. */
+    static final int DEFAULT_PORT = 6161;
 
-        _output.print("\n");
-    }
+    /** Milliseconds in a second. */
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    /** Default table size limit, in megabytes, for --compiled. */
+    private static final long DEFAULT_COMPILED_MB = 64;
+
+    /** Bytes in a megabyte. */
+    private static final long MEGABYTE = 1 << 20;
+
+    /** Ringstellung field of a setting line. */
+    private static final Pattern STELLUNG =
+        Pattern.compile("\\w+", Pattern.UNICODE_CHARACTER_CLASS);
+
+    /** Address on which --serve listens. */
+    private SocketAddress _serveAddress;
+
+    /** Counters and timers of this run, recording nothing unless
+     *  --metrics was given. */
+    private final Metrics _metrics;
+
+    /** True once _metrics have been written out. */
+    private boolean _metricsWritten;
+
+    /** Options given on the command line, mapped to their values. */
+    private HashMap<String, String> _options = new HashMap<String, String>();
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private BufferedReader _input;
 
     /** Source of machine configuration. */
-    private Scanner _config;
+    private BufferedReader _config;
+
+    /** Name of the configuration file. */
+    private String _configName;
 
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
-    /** List of all rotors from config. */
-    private ArrayList<Rotor> allRotors = new ArrayList<Rotor>();
+    /** Reusable buffer holding the current message line. */
+    private char[] _message = new char[INITIAL_MESSAGE_SIZE];
+
+    /** Initial capacity of readConfig's table of rotor kinds. */
+    private static final int INITIAL_CATALOG_SIZE = 64;
+
+    /** Initial capacity of _message. */
+    private static final int INITIAL_MESSAGE_SIZE = 256;
+
 }
@@ -0,0 +1,184 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters and timers for the phases of a run of Main, written out as
+ *  JSON when it finishes.  A disabled Metrics reads no clock and counts
+ *  nothing, so that its calls cost a test of a final field each.  An
+ *  enabled one may be updated from several threads at once; the times
+ *  of phases run in parallel are then the sums over the threads.
+ *  @author Dhruv Sirohi
+ */
+class Metrics {
+
+    /** The phases of a run that are timed. */
+    enum Phase {
+        /** Reading the configuration (or its cache). */
+        CONFIG("config"),
+        /** Applying setting lines: inserting and setting rotors, ring
+         *  settings and plugboards. */
+        SETUP("setup"),
+        /** Converting messages. */
+        CONVERT("convert"),
+        /** Formatting converted messages into groups and writing them
+         *  out. */
+        OUTPUT("output");
+
+        /** A phase named NAME in the JSON output. */
+        Phase(String name) {
+            _name = name;
+        }
+
+        /** My name in the JSON output. */
+        private final String _name;
+    }
+
+    /** The things that are counted. */
+    enum Counter {
+        /** Message characters converted. */
+        CHARACTERS("characters"),
+        /** Message lines converted. */
+        MESSAGES("messages"),
+        /** Setting lines applied. */
+        SETTING_LINES("settingLines");
+
+        /** A counter named NAME in the JSON output. */
+        Counter(String name) {
+            _name = name;
+        }
+
+        /** My name in the JSON output. */
+        private final String _name;
+    }
+
+    /** Metrics that record nothing. */
+    static final Metrics DISABLED = new Metrics(false);
+
+    /** Metrics that record nothing unless ENABLED, starting now. */
+    Metrics(boolean enabled) {
+        _enabled = enabled;
+        _created = System.nanoTime();
+        for (int i = 0; i < _nanos.length; i++) {
+            _nanos[i] = new LongAdder();
+        }
+        for (int i = 0; i < _counts.length; i++) {
+            _counts[i] = new LongAdder();
+        }
+    }
+
+    /** Return true iff I record anything. */
+    boolean enabled() {
+        return _enabled;
+    }
+
+    /** Return the time at which a phase starts, to be passed to stop or
+     *  lap (0 if I am disabled). */
+    long start() {
+        return _enabled ? System.nanoTime() : 0;
+    }
+
+    /** Add the time since START, from start() or lap(), to PHASE. */
+    void stop(Phase phase, long start) {
+        if (_enabled) {
+            _nanos[phase.ordinal()].add(System.nanoTime() - start);
+        }
+    }
+
+    /** Add the time since START, from start() or lap(), to PHASE, and
+     *  return the time at which the next phase starts. */
+    long lap(Phase phase, long start) {
+        if (!_enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        _nanos[phase.ordinal()].add(now - start);
+        return now;
+    }
+
+    /** Add N to COUNTER. */
+    void count(Counter counter, long n) {
+        if (_enabled) {
+            _counts[counter.ordinal()].add(n);
+        }
+    }
+
+    /** Return the nanoseconds recorded for PHASE. */
+    long nanos(Phase phase) {
+        return _nanos[phase.ordinal()].sum();
+    }
+
+    /** Return the value of COUNTER. */
+    long count(Counter counter) {
+        return _counts[counter.ordinal()].sum();
+    }
+
+    /** Return the bytes of heap used at its peak so far by this JVM: the
+     *  sum of the peaks of its heap memory pools, which may be reached
+     *  at different times, so that this is a bound on the true peak. */
+    static long peakHeap() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                result += pool.getPeakUsage().getUsed();
+            }
+        }
+        return result;
+    }
+
+    /** Return my values as a JSON object: the nanoseconds since I was
+     *  made, each counter, the nanoseconds of each phase, the
+     *  characters converted per second overall and per second of
+     *  conversion, and the peak heap usage (see peakHeap). */
+    String toJson() {
+        long elapsed = System.nanoTime() - _created;
+        StringBuilder result = new StringBuilder();
+        result.append("{\n  \"elapsedNanos\": ").append(elapsed)
+            .append(",\n  \"counters\": {");
+        String sep = "\n";
+        for (Counter counter : Counter.values()) {
+            result.append(sep).append("    \"").append(counter._name)
+                .append("\": ").append(count(counter));
+            sep = ",\n";
+        }
+        result.append("\n  },\n  \"phaseNanos\": {");
+        sep = "\n";
+        for (Phase phase : Phase.values()) {
+            result.append(sep).append("    \"").append(phase._name)
+                .append("\": ").append(nanos(phase));
+            sep = ",\n";
+        }
+        long chars = count(Counter.CHARACTERS);
+        result.append("\n  },\n  \"charactersPerSecond\": ")
+            .append(perSecond(chars, elapsed))
+            .append(",\n  \"convertCharactersPerSecond\": ")
+            .append(perSecond(chars, nanos(Phase.CONVERT)))
+            .append(",\n  \"peakHeapBytes\": ").append(peakHeap())
+            .append("\n}\n");
+        return result.toString();
+    }
+
+    /** Return N per second over NANOS nanoseconds, rounded, or 0 if
+     *  NANOS is 0. */
+    private static long perSecond(long n, long nanos) {
+        return nanos == 0 ? 0 : Math.round(n * NANOS_PER_SECOND / nanos);
+    }
+
+    /** Nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /** True iff I record anything. */
+    private final boolean _enabled;
+
+    /** Time at which I was made. */
+    private final long _created;
+
+    /** Nanoseconds recorded for each phase. */
+    private final LongAdder[] _nanos = new LongAdder[Phase.values().length];
+
+    /** Value of each counter. */
+    private final LongAdder[] _counts =
+        new LongAdder[Counter.values().length];
+}
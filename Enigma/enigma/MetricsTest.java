@@ -0,0 +1,114 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author Dhruv Sirohi
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Directory holding the end-to-end cases that must succeed. */
+    private static final File CORRECT = new File("../testing/correct");
+
+    /** Return the value of the JSON field NAME in JSON, which must hold
+     *  an integer. */
+    private static long field(String json, String name) {
+        Matcher mat = Pattern.compile("\"" + name + "\": (\\d+)")
+            .matcher(json);
+        assertTrue(msg("metrics", "no field %s in %s", name, json),
+                   mat.find());
+        return Long.parseLong(mat.group(1));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkDisabled() {
+        Metrics metrics = Metrics.DISABLED;
+        assertFalse("Disabled metrics enabled", metrics.enabled());
+        assertEquals("Disabled metrics read the clock", 0, metrics.start());
+        metrics.stop(Metrics.Phase.CONVERT, -1000);
+        metrics.count(Metrics.Counter.CHARACTERS, 5);
+        assertEquals("Disabled metrics timed", 0,
+                     metrics.nanos(Metrics.Phase.CONVERT));
+        assertEquals("Disabled metrics counted", 0,
+                     metrics.count(Metrics.Counter.CHARACTERS));
+    }
+
+    @Test
+    public void checkEnabled() {
+        Metrics metrics = new Metrics(true);
+        long start = metrics.start();
+        long next = metrics.lap(Metrics.Phase.SETUP, start - 1000);
+        assertTrue("Lap went back in time", next >= start);
+        metrics.stop(Metrics.Phase.CONVERT, next - 2000);
+        metrics.count(Metrics.Counter.CHARACTERS, 5);
+        metrics.count(Metrics.Counter.CHARACTERS, 7);
+        assertTrue("Lap not timed",
+                   metrics.nanos(Metrics.Phase.SETUP) >= 1000);
+        assertTrue("Stop not timed",
+                   metrics.nanos(Metrics.Phase.CONVERT) >= 2000);
+        assertEquals("Wrong count", 12,
+                     metrics.count(Metrics.Counter.CHARACTERS));
+        String json = metrics.toJson();
+        assertEquals("Wrong JSON count", 12, field(json, "characters"));
+        assertEquals("Wrong JSON time", metrics.nanos(Metrics.Phase.SETUP),
+                     field(json, "setup"));
+        assertTrue("No peak heap", field(json, "peakHeapBytes") > 0);
+    }
+
+    @Test
+    public void checkMain() throws IOException {
+        File input = new File(CORRECT, "riptide.in");
+        long messages = 0, characters = 0;
+        for (String line : Files.readAllLines(input.toPath())) {
+            if (!line.startsWith("*")) {
+                messages += 1;
+                characters += line.replaceAll("\\s", "").length();
+            }
+        }
+        for (String[] options : new String[][] {
+                {}, { "--parallel=2" } }) {
+            File output = File.createTempFile("enigma", ".out"),
+                json = File.createTempFile("enigma", ".json");
+            output.deleteOnExit();
+            json.deleteOnExit();
+            List<String> args = new ArrayList<>(Arrays.asList(
+                    new File(CORRECT, "default.conf").getPath(),
+                    input.getPath(), output.getPath(),
+                    "--metrics=" + json.getPath()));
+            args.addAll(Arrays.asList(options));
+            Main.main(args.toArray(new String[0]));
+            String result = new String(Files.readAllBytes(json.toPath()));
+            assertEquals(msg("main", "messages with %s", args), messages,
+                         field(result, "messages"));
+            assertEquals(msg("main", "characters with %s", args), characters,
+                         field(result, "characters"));
+            assertEquals(msg("main", "setting lines with %s", args), 1,
+                         field(result, "settingLines"));
+            assertTrue(msg("main", "conversion not timed with %s", args),
+                       field(result, "convert") > 0);
+        }
+    }
+
+}
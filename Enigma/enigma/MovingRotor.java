@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** Class that represents a rotating rotor in the enigma machine.
@@ -15,12 +17,28 @@ class MovingRotor extends Rotor {
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
         _notches = notches;
+        int size = perm.size();
+        _notch = new boolean[2 * size];
+        notches.codePoints().forEach(cp -> {
+            int index = perm.alphabet().toInt(cp);
+            if (index >= 0) {
+                _notch[index] = true;
+                _notch[index + size] = true;
+            }
+        });
+    }
+
+    /** A rotor like ROTOR, sharing its notches, in its 0 setting. */
+    private MovingRotor(MovingRotor rotor) {
+        super(rotor.name(), rotor.permutation());
+        _notches = rotor._notches;
+        _notch = rotor._notch;
     }
 
     @Override
     void advance() {
-        this._setting += 1;
-        this._setting = permutation().wrap(this._setting);
+        int next = _setting + 1;
+        _setting = next == size() ? 0 : next;
     }
 
     @Override
@@ -28,12 +46,42 @@ class MovingRotor extends Rotor {
         return true;
     }
 
+    @Override
+    Rotor copy() {
+        return copyStateTo(new MovingRotor(this));
+    }
+
+    /** Return the characters of my notches, as given when I was
+     *  made. */
+    String notches() {
+        return _notches;
+    }
+
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
-        return _notches.indexOf(_alpha.toChar(setting())) >= 0;
+        return _notch[_setting + ring()];
+    }
+
+    /** Return the settings at which I am at a notch, in increasing
+     *  order. */
+    int[] notchSettings() {
+        int[] result = new int[size()];
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (_notch[i + ring()]) {
+                result[count] = i;
+                count++;
+            }
+        }
+        return Arrays.copyOf(result, count);
     }
 
     /** String of my notches. */
-    private String _notches;
+    private final String _notches;
+
+    /** True at the index of each character of _notches, and again at
+     *  that index plus size(), so that I am at a notch exactly when
+     *  _notch[setting() + ring()] holds, with no wrapping. */
+    private final boolean[] _notch;
 }
@@ -1,7 +1,5 @@
 package enigma;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Scanner;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -17,14 +15,39 @@ class Permutation {
      *  Whitespace is ignored. */
     Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        _map = new HashMap<Character, Character>();
-        _invMap = new HashMap<Character, Character>();
-        _scanCycles = new Scanner(cycles);
-        _scanCycles.useDelimiter("\\)");
-        while (_scanCycles.hasNext()) {
-            String temp = _scanCycles.next();
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        boolean[] inCycle = new boolean[alphabet.size()];
+        for (int i = 0; i < _forward.length; i++) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        Scanner scanCycles = new Scanner(cycles);
+        scanCycles.useDelimiter("\\)");
+        while (scanCycles.hasNext()) {
+            String temp = scanCycles.next();
             String holder = trimCycle(temp);
-            addCycle(holder);
+            addCycle(holder, inCycle);
+        }
+    }
+
+    /** Set this Permutation to the one taking each index I of ALPHABET
+     *  to FORWARD[I], which must hold each index exactly once. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        if (forward.length != alphabet.size()) {
+            throw new EnigmaException("Permutation of wrong size.");
+        }
+        _alphabet = alphabet;
+        _forward = forward.clone();
+        _inverse = new int[forward.length];
+        boolean[] seen = new boolean[forward.length];
+        for (int i = 0; i < _forward.length; i++) {
+            int next = _forward[i];
+            if (next < 0 || next >= _forward.length || seen[next]) {
+                throw new EnigmaException("Not a permutation.");
+            }
+            seen[next] = true;
+            _inverse[next] = i;
         }
     }
 
@@ -55,32 +78,26 @@ class Permutation {
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
-     *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        for (int i = 0; i < cycle.length(); i++) {
-            char temp = cycle.charAt(i);
-            if (_map.containsKey(cycle.charAt(i))) {
+     *  c0c1...cm.  INCYCLE is true for each index of the alphabet already
+     *  placed in a cycle, and is updated. */
+    private void addCycle(String cycle, boolean[] inCycle) {
+        int[] indices = cycle.codePoints().toArray();
+        for (int i = 0; i < indices.length; i++) {
+            int index = _alphabet.toInt(indices[i]);
+            if (index >= 0 && inCycle[index]) {
                 throw new EnigmaException("Cycle letter repeated.");
             }
-            if (!_alphabet.contains(cycle.charAt(i))
-                    || cycle.chars().filter(ch -> ch == temp).count() > 1) {
+            if (index < 0) {
                 throw new EnigmaException("Permutation"
                         + " letter not in Alphabet.");
             }
-            if (i == cycle.length() - 1) {
-                _map.put(cycle.charAt(i), cycle.charAt(0));
-            } else {
-                _map.put(cycle.charAt(i), cycle.charAt(i + 1));
-            }
+            inCycle[index] = true;
+            indices[i] = index;
         }
-        int k = cycle.length() - 1;
-        int j;
-        for (j = k; j >= 0; j--) {
-            if (j == 0) {
-                _invMap.put(cycle.charAt(j), cycle.charAt(k));
-            } else {
-                _invMap.put(cycle.charAt(j), cycle.charAt(j - 1));
-            }
+        for (int i = 0; i < indices.length; i++) {
+            int next = indices[(i + 1) % indices.length];
+            _forward[indices[i]] = next;
+            _inverse[next] = indices[i];
         }
     }
 
@@ -101,37 +118,20 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char result;
-        int posn = p % _alphabet.size();
-        posn = wrap(posn);
-        if (_map.containsKey(_alphabet.toChar(posn))) {
-            result = _map.get(_alphabet.toChar(posn));
-            return _alphabet.toInt(result);
-        } else {
-            return posn;
-        }
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        int posn = c % _alphabet.size();
-        posn = wrap(posn);
-        if (_invMap.containsKey(_alphabet.toChar(posn))) {
-            char result = _invMap.get(_alphabet.toChar(posn));
-            return _alphabet.toInt(result);
-        } else {
-            return posn;
-        }
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        if (_map.containsKey(p)) {
-            return _map.get(p);
-        } else if (_alphabet.contains(p)) {
-            return p;
+        if (_alphabet.contains(p)) {
+            return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
         } else {
             throw new EnigmaException("Input value not valid.");
         }
@@ -147,10 +147,8 @@ class Permutation {
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        if (_invMap.containsKey(c)) {
-            return _invMap.get(c);
-        } else if (_alphabet.contains(c)) {
-            return c;
+        if (_alphabet.contains(c)) {
+            return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
         } else {
             throw new EnigmaException("Input value not valid.");
         }
@@ -164,28 +162,33 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        boolean answer = true;
-        if (_alphabet.size() > _map.size()) {
-            return false;
-        }
-        for (Map.Entry<Character, Character> entry : _map.entrySet()) {
-            if (entry.getKey() == entry.getValue()) {
-                answer = false;
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
+                return false;
             }
         }
-        return answer;
+        return true;
+    }
+
+    /** Returns the compiled forward table, mapping each index of my
+     *  alphabet to its image.  Shared, so callers must not modify it. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Returns the compiled inverse table of forwardTable().  Shared, so
+     *  callers must not modify it. */
+    int[] inverseTable() {
+        return _inverse;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** Map of permutations for each letter in alphabet. */
-    protected Map<Character, Character> _map;
-
-    /** Map of invert permutation for each letter in alphabet. */
-    protected Map<Character, Character> _invMap;
+    /** Image of each index of the alphabet under this permutation. */
+    private final int[] _forward;
 
-    /** Scanner to read each block of cycles. */
-    private Scanner _scanCycles;
+    /** Image of each index of the alphabet under the inverse permutation. */
+    private final int[] _inverse;
 
 }
@@ -98,6 +98,19 @@ public class PermutationTest {
         assertEquals("Wrong permute for index 4 % size", 4, p4.invert(4));
     }
 
+    @Test
+    public void testCompiledTables() {
+        perm = new Permutation(NAVALA.get("I"), UPPER);
+        int[] forward = perm.forwardTable(), inverse = perm.inverseTable();
+        assertEquals("Wrong table size", 26, forward.length);
+        for (int i = 0; i < forward.length; i += 1) {
+            assertEquals(msg("I", "table disagrees at %d", i),
+                         perm.permute(i), forward[i]);
+            assertEquals(msg("I", "inverse not inverse at %d", i),
+                         i, inverse[forward[i]]);
+        }
+    }
+
     @Test(expected = EnigmaException.class)
     public void testWrongCycles() {
         Permutation p = new Permutation("(AB(CSD)E)", new Alphabet("ABCDES"));
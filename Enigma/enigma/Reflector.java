@@ -14,6 +14,11 @@ class Reflector extends FixedRotor {
     }
 
 
+    @Override
+    Rotor copy() {
+        return copyStateTo(new Reflector(name(), permutation()));
+    }
+
     /** Return true iff I reflect. */
     boolean reflecting() {
         return true;
@@ -1,6 +1,4 @@
 package enigma;
-import java.util.ArrayList;
-import java.util.List;
 
 /** Superclass that represents a rotor in the enigma machine.
  *  @author Dhruv Sirohi
@@ -11,9 +9,9 @@ class Rotor {
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
+        _forward = perm.forwardTable();
+        _inverse = perm.inverseTable();
 
-        _alpha = new Alphabet(_permutation.getAlpha());
-        _alphaList = new ArrayList<Character>(_alpha.size());
         _setting = 0;
         _pointer = this.setting();
     }
@@ -48,9 +46,10 @@ class Rotor {
         return false;
     }
 
-    /** Return my current setting. */
+    /** Return my current setting, which set() and advance() keep in the
+     *  range 0..size()-1. */
     int setting() {
-        return _permutation.wrap(_setting);
+        return _setting;
     }
 
     /** Set setting() to POSN. */
@@ -62,39 +61,56 @@ class Rotor {
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
-        if (_alpha.contains(cposn)) {
-            set(_alpha.toInt(cposn));
-        } else {
+        set(positionOf(cposn));
+    }
+
+    /** Return the setting at which the character with code point CP
+     *  shows, given my ring setting. */
+    int positionOf(int cp) {
+        int index = alphabet().toInt(cp);
+        if (index < 0) {
             throw new EnigmaException("Invalid setting value.");
         }
+        return _permutation.wrap(index - _ring);
+    }
+
+    /** Return my ring setting: the index of the character that shows
+     *  at setting 0. */
+    int ring() {
+        return _ring;
+    }
+
+    /** Set ring() to RING, shifting my characters against my wiring. */
+    void setRing(int ring) {
+        _ring = _permutation.wrap(ring);
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int posn = _permutation.wrap(p);
-        int input = (posn + setting()) % _alpha.size();
-        int result = _permutation.permute(input);
-        result = (result - setting()) % _alpha.size();
-        if (result < 0) {
-            return _alpha.size() + result;
-        } else {
-            return result;
-        }
+        return shift(_forward, _permutation.wrap(p));
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
      *  according to the inverse of my permutation. */
     int convertBackward(int e) {
-        int posn = _permutation.wrap(e);
-        int input = (posn + setting()) % _alpha.size();
-        int result = _permutation.invert(input);
-        result = (result - setting()) % _alpha.size();
+        return shift(_inverse, _permutation.wrap(e));
+    }
+
+    /** Returns the image of POSN (in the range 0..size()-1) under TABLE
+     *  once the contacts have been offset by my current setting. */
+    private int shift(int[] table, int posn) {
+        int size = table.length;
+        int setting = setting();
+        int input = posn + setting;
+        if (input >= size) {
+            input -= size;
+        }
+        int result = table[input] - setting;
         if (result < 0) {
-            return _alpha.size() + result;
-        } else {
-            return result;
+            result += size;
         }
+        return result;
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
@@ -103,12 +119,18 @@ class Rotor {
         return false;
     }
 
-    /** Updates Ring according to Ringstellung
-     * settiing.
-     * @param ch - new 0 posn
-     */
-    void updateRing(char ch) {
-        this._alpha.updateRing(ch);
+    /** Return a new rotor like me, with my current setting and ring
+     *  setting, that shares nothing mutable with me. */
+    Rotor copy() {
+        return copyStateTo(new Rotor(name(), permutation()));
+    }
+
+    /** Give R, a fresh rotor like me, my setting and ring setting, and
+     *  return it. */
+    protected Rotor copyStateTo(Rotor r) {
+        r._setting = _setting;
+        r._ring = _ring;
+        return r;
     }
 
     /** Advance me one position, if possible. By default, does nothing. */
@@ -126,16 +148,17 @@ class Rotor {
     /** The permutation implemented by this rotor in its 0 position. */
     private Permutation _permutation;
 
+    /** Compiled forward table of my permutation. */
+    private final int[] _forward;
+
+    /** Compiled inverse table of my permutation. */
+    private final int[] _inverse;
+
     /** This rotors setting. */
     protected int _setting;
 
-    /** This rotors personal Alphabet. */
-    protected Alphabet _alpha;
-
-    /** This rotors personal list of all letters in
-     * alphabet.
-     */
-    protected List<Character> _alphaList;
+    /** This rotor's ring setting. */
+    private int _ring;
 
 
 
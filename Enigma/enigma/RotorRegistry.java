@@ -0,0 +1,238 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/** The rotors available to a machine, built once when its configuration
+ *  is read and shared by every machine made from it.  Each rotor gets a
+ *  dense id, its index in the order given, and its kind and (for a
+ *  reflector) whether it is a derangement are found here once, so that
+ *  checking the rotors named by a setting line is a map lookup and a few
+ *  array reads per rotor, and repeats are found among the handful of ids
+ *  already picked, whatever the size of the catalog.
+ *  A registry may also be given a way to compile each of its rotors
+ *  (from its definition, say, or a ConfigCache) rather than the rotors
+ *  themselves, and then compiles each one only when it is first used,
+ *  so that a large catalog of rotors costs little more than its names
+ *  until a setting line names them.  It may be used from several
+ *  threads at once.
+ *  @author Dhruv Sirohi
+ */
+class RotorRegistry {
+
+    /** Kinds of rotor. */
+    static final byte REFLECTOR = 0, FIXED = 1, MOVING = 2;
+
+    /** A registry of ROTORS, whose names must be distinct. */
+    RotorRegistry(Collection<Rotor> rotors) {
+        this(rotors.size(), null);
+        int id = 0;
+        for (Rotor rotor : rotors) {
+            add(id, rotor.name(), kindOf(rotor));
+            install(id, rotor);
+            id += 1;
+        }
+    }
+
+    /** A registry of rotors named NAMES, which must be distinct, of the
+     *  kinds KINDS, whose definitions are DEFINITIONS.  The rotor whose
+     *  id is ID is COMPILER.apply(DEFINITIONS.get(ID)), computed when it
+     *  is first needed, which must have that name and kind. */
+    RotorRegistry(List<String> names, byte[] kinds, List<String> definitions,
+                  Function<String, Rotor> compiler) {
+        this(names, kinds, id -> compiler.apply(definitions.get(id)));
+        for (int id = 0; id < names.size(); id++) {
+            _definitions[id] = definitions.get(id);
+        }
+    }
+
+    /** A registry of rotors named NAMES, which must be distinct, of the
+     *  kinds KINDS.  The rotor whose id is ID is COMPILER.apply(ID),
+     *  computed when it is first needed, which must have that name and
+     *  kind. */
+    RotorRegistry(List<String> names, byte[] kinds,
+                  IntFunction<Rotor> compiler) {
+        this(names.size(), compiler);
+        for (int id = 0; id < names.size(); id++) {
+            add(id, names.get(id), kinds[id]);
+        }
+    }
+
+    /** An empty registry for N rotors, compiled by COMPILER. */
+    private RotorRegistry(int n, IntFunction<Rotor> compiler) {
+        _rotors = new Rotor[n];
+        _names = new String[n];
+        _kinds = new byte[n];
+        _deranged = new boolean[n];
+        _definitions = new String[n];
+        _ids = new HashMap<>(2 * n);
+        _compiler = compiler;
+    }
+
+    /** Return the kind of ROTOR. */
+    static byte kindOf(Rotor rotor) {
+        return rotor instanceof Reflector ? REFLECTOR
+            : rotor instanceof MovingRotor ? MOVING : FIXED;
+    }
+
+    /** Record that the rotor whose id is ID is named NAME and is of kind
+     *  KIND. */
+    private void add(int id, String name, byte kind) {
+        if (_ids.putIfAbsent(name, id) != null) {
+            throw new EnigmaException("Rotors cannot be repeated.");
+        }
+        _names[id] = name;
+        _kinds[id] = kind;
+    }
+
+    /** Make ROTOR the rotor whose id is ID. */
+    private void install(int id, Rotor rotor) {
+        if (_kinds[id] == REFLECTOR) {
+            _deranged[id] = rotor.permutation().derangement();
+        }
+        _rotors[id] = rotor;
+    }
+
+    /** Return the number of rotors I hold. */
+    int size() {
+        return _rotors.length;
+    }
+
+    /** Return the id of the rotor named NAME, or -1 if there is none. */
+    int id(String name) {
+        Integer result = _ids.get(name);
+        return result == null ? -1 : result;
+    }
+
+    /** Return the name of the rotor whose id is ID. */
+    String name(int id) {
+        return _names[id];
+    }
+
+    /** Return the definition of the rotor whose id is ID, as given to
+     *  my constructor, or null if I was not given definitions. */
+    String definition(int id) {
+        return _definitions[id];
+    }
+
+    /** Return the pattern rotor whose id is ID, compiling it if need
+     *  be. */
+    synchronized Rotor rotor(int id) {
+        if (_rotors[id] == null) {
+            Rotor rotor = _compiler.apply(id);
+            if (kindOf(rotor) != _kinds[id] || id(rotor.name()) != id) {
+                throw new EnigmaException("Bad rotor.");
+            }
+            install(id, rotor);
+        }
+        return _rotors[id];
+    }
+
+    /** Return the number of my rotors that have been compiled. */
+    synchronized int compiled() {
+        int result = 0;
+        for (Rotor rotor : _rotors) {
+            result += rotor == null ? 0 : 1;
+        }
+        return result;
+    }
+
+    /** Return the kind of the rotor whose id is ID: REFLECTOR, FIXED or
+     *  MOVING. */
+    byte kind(int id) {
+        return _kinds[id];
+    }
+
+    /** Return true iff the rotor whose id is ID is a reflector that is a
+     *  derangement, compiling it if need be. */
+    synchronized boolean deranged(int id) {
+        rotor(id);
+        return _deranged[id];
+    }
+
+    /** Return all my rotors, in order of id, compiling any that have not
+     *  been. */
+    synchronized Collection<Rotor> rotors() {
+        if (_all == null) {
+            for (int id = 0; id < _rotors.length; id++) {
+                rotor(id);
+            }
+            _all = Collections.unmodifiableList(Arrays.asList(
+                    _rotors.clone()));
+        }
+        return _all;
+    }
+
+    /** Return the ids of the rotors named NAMES, which are the rotors of a
+     *  machine with NUMROTORS slots and PAWLS pawls from left to right,
+     *  the first a reflector.  Check that each exists, is of the kind
+     *  its slot needs, and appears only once. */
+    int[] ids(String[] names, int numRotors, int pawls) {
+        int[] result = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            int id = id(names[i]);
+            if (id < 0) {
+                throw new EnigmaException(i == 0 ? "Reflector not in config."
+                                          : "Rotor not in configuration");
+            }
+            byte kind = _kinds[id];
+            if (i == 0) {
+                if (kind != REFLECTOR) {
+                    throw new EnigmaException(
+                        " First rotor must be a reflector.");
+                } else if (!deranged(id)) {
+                    throw new EnigmaException(
+                        "Reflector should be a derangement.");
+                }
+            } else if (i >= numRotors - pawls) {
+                if (kind != MOVING) {
+                    throw new EnigmaException("Rotor number " + i
+                            + " must be a Moving Rotor.");
+                }
+            } else if (kind == MOVING) {
+                throw new EnigmaException("Rotor number "
+                        + i + " must be a Fixed Rotor.");
+            }
+            for (int j = 0; j < i; j++) {
+                if (result[j] == id) {
+                    throw new EnigmaException("Rotors"
+                            + " cannot be repeated in the machine.");
+                }
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    /** The rotors, by id, or null for those not yet compiled. */
+    private final Rotor[] _rotors;
+
+    /** The name of each rotor, by id. */
+    private final String[] _names;
+
+    /** The kind of each rotor, by id. */
+    private final byte[] _kinds;
+
+    /** Whether each compiled rotor is a reflector that is a derangement,
+     *  by id. */
+    private final boolean[] _deranged;
+
+    /** The definitions of the rotors, by id, if I was given them. */
+    private final String[] _definitions;
+
+    /** Compiles the rotor with a given id. */
+    private final IntFunction<Rotor> _compiler;
+
+    /** The id of each rotor, by name. */
+    private final Map<String, Integer> _ids;
+
+    /** All the rotors, in order of id, unmodifiable, once all have been
+     *  compiled. */
+    private Collection<Rotor> _all;
+}
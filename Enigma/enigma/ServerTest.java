@@ -0,0 +1,142 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for Main's --serve option, the Client
+ *  class, and the Latencies class they report with.
+ *  @author Dhruv Sirohi
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Directory holding the end-to-end cases that must succeed. */
+    private static final File CORRECT = new File("../testing/correct");
+
+    /** Path of the socket of a server started by server(). */
+    private static File socket;
+
+    /** Return the path of the socket of a server of the default
+     *  configuration, started on a daemon thread the first time this is
+     *  called and kept until the tests end. */
+    private static synchronized String server() throws Exception {
+        if (socket == null) {
+            File dir = Files.createTempDirectory("enigma").toFile();
+            dir.deleteOnExit();
+            socket = new File(dir, "server");
+            String[] args = { new File(CORRECT, "default.conf").getPath(),
+                              "--serve=" + socket.getPath() };
+            Thread thread = new Thread(() -> {
+                try {
+                    Main.main(args);
+                } catch (IOException excp) {
+                    /* The server stops when the tests do. */
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            while (!accepting(socket)) {
+                Thread.sleep(10);
+            }
+        }
+        return socket.getPath();
+    }
+
+    /** Return true iff a server accepts connections on the Unix-domain
+     *  socket SOCKET.  (Its file appears when it is bound, just before
+     *  the server listens.) */
+    private static boolean accepting(File socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket.getPath()))
+                .close();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return a temporary file holding TEXT. */
+    private static File input(String text) throws IOException {
+        File result = File.createTempFile("enigma", ".in");
+        result.deleteOnExit();
+        Files.write(result.toPath(), text.getBytes());
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkLatencies() {
+        Latencies latencies = new Latencies();
+        assertEquals("Empty percentile", 0, latencies.percentile(0.5));
+        for (long nanos = 1; nanos <= 100000; nanos += 1) {
+            latencies.record(nanos);
+        }
+        assertEquals("Wrong count", 100000, latencies.count());
+        for (double q : new double[] { 0.01, 0.5, 0.99, 1.0 }) {
+            long exact = (long) (q * 100000), found = latencies.percentile(q);
+            assertTrue(msg("latencies", "p%.0f is %d, not about %d", q * 100,
+                           found, exact),
+                       found >= exact && found <= exact + exact / 16);
+        }
+        assertTrue("Bad summary",
+                   latencies.summary(1000000000).startsWith(
+                           "100000 requests in 1.000 s: 100000 requests/s"));
+    }
+
+    @Test
+    public void checkServe() throws Exception {
+        String address = server();
+        for (String name : new String[] { "riptide", "trivial" }) {
+            File output = File.createTempFile("enigma", ".out");
+            output.deleteOnExit();
+            new Client(new String[] {
+                    address, new File(CORRECT, name + ".in").getPath(),
+                    output.getPath() }).process();
+            assertEquals(msg(name, "served output differs"),
+                         normalized(new File(CORRECT, name + ".out")),
+                         normalized(output));
+        }
+    }
+
+    @Test
+    public void checkServeErrors() throws Exception {
+        String address = server();
+        for (String text : new String[] {
+                "HELLO\n", "* B Beta III IV I AXLE\n* B Beta I I I AAAA\nHI\n",
+                "* B Beta III IV I AXLE\nHELLO WORLD\n* X\n" }) {
+            File output = File.createTempFile("enigma", ".out");
+            output.deleteOnExit();
+            try {
+                new Client(new String[] { address, input(text).getPath(),
+                                          output.getPath() }).process();
+                fail(msg("serve", "no error for %s", text));
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+        }
+        File output = File.createTempFile("enigma", ".out");
+        output.deleteOnExit();
+        new Client(new String[] {
+                address, input("* B Beta III IV I AXLE\nHELLO\n").getPath(),
+                output.getPath() }).process();
+        assertEquals("Server did not survive errors", 1,
+                     Files.readAllLines(output.toPath()).size());
+    }
+
+}
@@ -1,5 +1,8 @@
 package enigma;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -18,6 +21,15 @@ class TestUtils {
         return testId + " (" + String.format(msgFormat, args) + ")";
     }
 
+    /** Return the contents of FILE, with runs of blanks made single and
+     *  trailing blanks removed, so that outputs compare as the
+     *  testing scripts' diff -b compares them. */
+    static String normalized(File file) throws IOException {
+        String text = new String(Files.readAllBytes(file.toPath()));
+        return text.replaceAll("[ \\t]+", " ").replaceAll(" \\n", "\n")
+            .trim();
+    }
+
     /** The naval rotors in the A (0) setting. */
     static final HashMap<String, String> NAVALA = new HashMap<>();
     static {
@@ -10,8 +10,17 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(PermutationTest.class,
-                                      MovingRotorTest.class));
+        System.exit(textui.runClasses(AlphabetTest.class,
+                                      PermutationTest.class,
+                                      MovingRotorTest.class,
+                                      MachineTest.class,
+                                      KeySearchTest.class,
+                                      CiphertextAttackTest.class,
+                                      ConfigCacheTest.class,
+                                      GroupWriterTest.class,
+                                      BatchMachineTest.class,
+                                      MetricsTest.class,
+                                      ServerTest.class));
     }
 
 }
@@ -0,0 +1,79 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A BatchMachine kernel that steps and converts as many lanes at a time
+ *  as fit in the machine's preferred vector size, with the lookups in
+ *  each lane's rotor tables done as gathers.  Loaded by BatchMachine
+ *  only when the jdk.incubator.vector module is present.
+ *  @author Dhruv Sirohi
+ */
+final class VectorKernel implements BatchMachine.Kernel {
+
+    @Override
+    public int convert(BatchMachine batch, int[] letters) {
+        int size = batch._size, slots = batch._slots;
+        int bound = SPECIES.loopBound(batch._lanes);
+        for (int lane = 0; lane < bound; lane += SPECIES.length()) {
+            IntVector base = IntVector.fromArray(SPECIES, batch._bases, lane);
+            VectorMask<Integer> advance = SPECIES.maskAll(false);
+            for (int j = batch._firstPawl; j < slots; j++) {
+                if (j == slots - 1) {
+                    advance = SPECIES.maskAll(true);
+                } else {
+                    IntVector next =
+                        IntVector.fromArray(SPECIES, batch._position[j + 1],
+                                            lane);
+                    advance = advance.or(gather(batch._notch[j + 1],
+                                                base.add(next))
+                                         .compare(VectorOperators.NE, 0));
+                }
+                IntVector p = IntVector.fromArray(SPECIES, batch._position[j],
+                                                  lane).add(1, advance);
+                p.blend(0, p.compare(VectorOperators.EQ, size))
+                    .intoArray(batch._position[j], lane);
+            }
+            IntVector c = IntVector.fromArray(SPECIES, letters, lane);
+            c = gather(batch._plugboard, base.add(c));
+            for (int s = slots - 1; s >= 0; s--) {
+                c = shift(batch._forward[s], base,
+                          IntVector.fromArray(SPECIES, batch._position[s],
+                                              lane), c, size);
+            }
+            for (int s = 1; s < slots; s++) {
+                c = shift(batch._inverse[s], base,
+                          IntVector.fromArray(SPECIES, batch._position[s],
+                                              lane), c, size);
+            }
+            gather(batch._plugboard, base.add(c)).intoArray(letters, lane);
+        }
+        return bound;
+    }
+
+    /** Return the elements of TABLE at INDEX. */
+    private IntVector gather(int[] table, IntVector index) {
+        index.intoArray(_index, 0);
+        return IntVector.fromArray(SPECIES, table, 0, _index, 0);
+    }
+
+    /** Return the images of C under the parts of TABLE starting at BASE,
+     *  offset by POSITION, in an alphabet of SIZE characters, as
+     *  Rotor.convertForward does in each lane. */
+    private IntVector shift(int[] table, IntVector base, IntVector position,
+                            IntVector c, int size) {
+        IntVector input = c.add(position);
+        input = input.sub(size, input.compare(VectorOperators.GE, size));
+        IntVector result = gather(table, base.add(input)).sub(position);
+        return result.add(size, result.compare(VectorOperators.LT, 0));
+    }
+
+    /** Vector shape used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Indices of the current gather. */
+    private final int[] _index = new int[SPECIES.length()];
+}
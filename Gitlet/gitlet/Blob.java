@@ -1,32 +1,58 @@
 package gitlet;
 import java.io.File;
-import java.io.Serializable;
 
 /** A blob of a file.
- * Represents the contents of the file
- * as String and stores their name.
+ * Represents the contents of a file as String, and is
+ * stored once in the object directory, named by its SHA-1,
+ * however many commits and stages refer to it by that id.
  *
  * @author Dhruv Sirohi
  */
-public class Blob implements Serializable {
+public class Blob {
 
     /** Contents of the file. */
     private String filedata;
-    /** Name of the file. */
-    private String name;
-
-    /** Empty constructor. */
-    Blob() {
-
-    }
+    /** SHA-1 of the contents. */
+    private String id;
 
     /** Constructor using file.
      *
      * @param file Reference file.
      */
     Blob(File file) {
-        filedata = Utils.readContentsAsString(file);
-        name = file.toString();
+        this(Utils.readContentsAsString(file));
+    }
+
+    /** Constructor using contents.
+     *
+     * @param data Contents of the file.
+     */
+    private Blob(String data) {
+        filedata = data;
+        id = Utils.sha1(data);
+    }
+
+    /** Read the blob with the given id from the object directory.
+     *
+     * @param id SHA-1 of the blob.
+     * @return Blob
+     */
+    static Blob read(String id) {
+        return new Blob(Utils.readContentsAsString(Utils.join(Main._objects,
+                id)));
+    }
+
+    /** Write this blob to the object directory, unless a blob
+     * with the same contents is already there.
+     *
+     * @return id of this blob
+     */
+    String save() {
+        File file = Utils.join(Main._objects, id);
+        if (!file.exists()) {
+            Utils.writeContents(file, filedata);
+        }
+        return id;
     }
 
     /** Return the contents of this file.
@@ -37,20 +63,28 @@ public class Blob implements Serializable {
         return filedata;
     }
 
-    /** Return the name of the file.
+    /** Return the SHA-1 of this blob.
      *
-     * @return name
+     * @return id
      */
-    String getFile() {
-        return name;
+    String getId() {
+        return id;
     }
 
-    /** Check if the given file is identical.
+    /** Copy the blobs with the given ids from one object directory
+     * to another, skipping those already there.
      *
-     * @param blob - provided blob of file
-     * @return true/false
+     * @param ids - blob ids
+     * @param from - source object directory
+     * @param to - destination object directory
      */
-    boolean isSame(Blob blob) {
-        return blob.getFiledata().equals(this.filedata);
+    static void copy(Iterable<String> ids, File from, File to) {
+        for (String blobId : ids) {
+            File dest = Utils.join(to, blobId);
+            if (!dest.exists()) {
+                Utils.writeContents(dest,
+                        (Object) Utils.readContents(Utils.join(from, blobId)));
+            }
+        }
     }
 }
@@ -12,6 +12,9 @@ import java.io.IOException;
 /** A commit. Stores all the relevant info,
  * not in the form of pointers. Handles adding new
  * commits (by creating them). Generates the SHA here.
+ * Files are tracked by the ids of their blobs, so a
+ * commit's size depends on the number of files it
+ * tracks, not on their contents.
  *
  * @author Dhruv Sirohi
  */
@@ -37,14 +40,12 @@ public class Commit implements Serializable {
     protected HashSet<String> branchNames;
     /** Data. Unused. */
     protected HashMap<String, byte[]> data;
-    /** A single blob of file information. */
-    private Blob blob;
     /** Merged message, if this is a merge commit. */
     private String merged;
     /** True if this is a result of a merge. */
     private boolean merger;
-    /** File data mapped by their names. */
-    private HashMap<String, Blob> blobs;
+    /** Blob ids mapped by the names of their files. */
+    private HashMap<String, String> blobs;
 
 
     /** Constructor. */
@@ -57,7 +58,6 @@ public class Commit implements Serializable {
         branchName = "master";
         parent = null;
         data = new HashMap<>();
-        blob = new Blob();
         divergence = false;
         commitID = Utils.sha1("What");
         branchNames = new HashSet<>();
@@ -160,26 +160,14 @@ public class Commit implements Serializable {
      */
     void updateCommit(Stage stage, String msg,
                       String parentId, String currbranch) {
-        HashMap<String, Blob> filemap = stage.getAddedfiles();
+        HashMap<String, String> filemap = stage.getAddedfiles();
         date = new Date();
         String s = String.format("%1$ta %1$tb %1$td %1$tT %1$tY %1$tz", date);
         timestamp = s;
         parentSha.add(parentId);
         displayName = msg;
         branchNames.add(currbranch);
-        HashSet<String> newfiles = new HashSet<>();
-        for (String name : filemap.keySet()) {
-            if (blobs.containsKey(name)) {
-                if (!(blobs.get(name).getFiledata().
-                        equals(filemap.get(name).getFiledata()))) {
-                    this.blobs.replace(name, filemap.get(name));
-                    newfiles.add(filemap.get(name).getFiledata());
-                }
-            } else {
-                this.blobs.put(name, filemap.get(name));
-                newfiles.add(filemap.get(name).getFiledata());
-            }
-        }
+        this.blobs.putAll(filemap);
         this.commitID = Utils.sha1((Object) Utils.serialize(this));
     }
 
@@ -192,7 +180,7 @@ public class Commit implements Serializable {
     void mergeCommit(Stage stage, File current, File branch) {
         String currid = Utils.readContentsAsString(current);
         String bid = Utils.readContentsAsString(branch);
-        HashMap<String, Blob> filemap = stage.getAddedfiles();
+        HashMap<String, String> filemap = stage.getAddedfiles();
         parentSha.add(currid);
         parentSha.add(bid);
         String bname = "";
@@ -208,16 +196,7 @@ public class Commit implements Serializable {
         merged = currid.substring(0, 7) + " " + bid.substring(0, 7);
         branchNames.add(branch.getName());
         branchNames.add(current.getName());
-        for (String name : filemap.keySet()) {
-            if (blobs.containsKey(name)) {
-                if (!blobs.get(name).getFiledata().
-                        equals(filemap.get(name).getFiledata())) {
-                    this.blobs.replace(name, filemap.get(name));
-                }
-            } else {
-                this.blobs.put(name, filemap.get(name));
-            }
-        }
+        this.blobs.putAll(filemap);
         this.commitID = Utils.sha1((Object)
                 Utils.serialize(this));
     }
@@ -289,7 +268,7 @@ public class Commit implements Serializable {
      */
     Blob restoreFile(String filename) {
         if (blobs.containsKey(filename)) {
-            return blobs.get(filename);
+            return Blob.read(blobs.get(filename));
         } else {
             System.out.println("File does not exist in that commit.");
             System.exit(0);
@@ -321,15 +300,14 @@ public class Commit implements Serializable {
      * @return same or not
      */
     boolean isIdentical(File file) {
-        return (blobs.get(file.toString()).
-                getFiledata()).equals(Utils.readContentsAsString(file));
+        return blobs.get(file.toString()).equals(new Blob(file).getId());
     }
 
     /**
-     * Returns blobs.
-     * @return A hashmap of blobs.
+     * Returns blob ids.
+     * @return A hashmap of blob ids by file name.
      */
-    HashMap<String, Blob> getBlobs() {
+    HashMap<String, String> getBlobs() {
         return blobs;
     }
 
@@ -337,7 +315,7 @@ public class Commit implements Serializable {
      * Return contents of the branch.
      * @return A hashmap
      */
-    HashMap<String, Blob> restoreBranch() {
+    HashMap<String, String> restoreBranch() {
         return blobs;
     }
 
@@ -442,7 +420,7 @@ public class Commit implements Serializable {
      */
     public Commit appendCommits(Stack<Commit> list, String branch) {
         Commit temp = this;
-        HashMap<String, Blob> initialtrack = temp.getBlobs();
+        HashMap<String, String> initialtrack = temp.getBlobs();
         while (!list.empty()) {
             Commit next = list.pop();
             String sha = next.getSHA();
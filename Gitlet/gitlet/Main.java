@@ -65,6 +65,9 @@ public class Main {
     protected static File _logs =
             Utils.join(_gitfolder.toString(), "_logs");
 
+    /** Object directory, holding each blob once, named by its SHA. */
+    protected static File _objects =
+            Utils.join(_gitfolder.toString(), "objects");
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
@@ -183,6 +186,7 @@ public class Main {
                         _remotefolder.mkdir(),
                         _branches.createNewFile(),
                         _logs.mkdir(),
+                        _objects.mkdir(),
                         _current.createNewFile(),
                         _active.createNewFile()};
                 Utils.writeContents(_active, "master");
@@ -295,7 +299,7 @@ public class Main {
         File current = Utils.join(_logs.toString(),
                 Utils.readContentsAsString(_head));
         commit = Utils.readObject(current, Commit.class);
-        HashMap<String, Blob> filesmap = commit.getBlobs();
+        HashMap<String, String> filesmap = commit.getBlobs();
         if (staging.contains(args[1]) || filesmap.containsKey(args[1])) {
             File deletable = new File(args[1]);
             staging.removefromAdded(args[1]);
@@ -389,7 +393,7 @@ public class Main {
         File commitfile = Utils.join(_logs.toString(), id);
         Commit com = Utils.readObject(commitfile, Commit.class);
         HashSet<String> printed = new HashSet<>();
-        HashMap<String, Blob> comfiles = com.getBlobs();
+        HashMap<String, String> comfiles = com.getBlobs();
         for (String filename : comfiles.keySet()) {
             File checkfile = new File((filename));
             if (!(checkfile).exists()
@@ -398,19 +402,19 @@ public class Main {
                 printed.add(filename);
             } else if (checkfile.exists()) {
                 if (!staging.containsAdded(filename)
-                        && !comfiles.get(filename).getFiledata().equals(Utils.
-                                readContentsAsString(new File(filename)))) {
+                        && !comfiles.get(filename).equals(
+                                new Blob(checkfile).getId())) {
                     System.out.println(filename + " (modified)");
                     printed.add(filename);
                 }
             }
         }
-        HashMap<String, Blob> stagefiles = staging.getAddedfiles();
+        HashMap<String, String> stagefiles = staging.getAddedfiles();
         for (String filename : stagefiles.keySet()) {
             File currstate = new File(filename);
             if (currstate.exists()) {
-                if (!stagefiles.get(filename).getFiledata().
-                        equals(Utils.readContentsAsString(currstate))) {
+                if (!stagefiles.get(filename).
+                        equals(new Blob(currstate).getId())) {
                     if (!printed.contains(filename)) {
                         System.out.println(filename + " (modified)");
                     }
@@ -431,9 +435,10 @@ public class Main {
      * @param stage - Stage
      * @param com - commit map
      */
-    private static void printUntracked(Stage stage, HashMap<String, Blob> com) {
+    private static void printUntracked(Stage stage,
+                                       HashMap<String, String> com) {
         List<String> untracked = Utils.plainFilenamesIn(_cwd);
-        HashMap<String, Blob> staged = stage.getAddedfiles();
+        HashMap<String, String> staged = stage.getAddedfiles();
         if (untracked != null) {
             for (String name : untracked) {
                 if (!com.containsKey(name) && !staged.containsKey(name)) {
@@ -574,10 +579,10 @@ public class Main {
         String branchid = Utils.readContentsAsString(branchfile);
         File commitfile = Utils.join(_logs.toString(), branchid);
         commit = Utils.readObject(commitfile, Commit.class);
-        HashMap<String, Blob> restored = commit.restoreBranch();
+        HashMap<String, String> restored = commit.restoreBranch();
         for (String name : restored.keySet()) {
             File file = new File(name);
-            Blob data = restored.get(name);
+            Blob data = Blob.read(restored.get(name));
             if (file.exists()) {
                 if (!curr.getBlobs().containsKey(name)
                         && !Utils.
@@ -735,11 +740,11 @@ public class Main {
             commit = Utils.readObject(commitplace, Commit.class);
         }
         String fullId = commit.getSHA();
-        HashMap<String, Blob> commitFiles = commit.getBlobs();
+        HashMap<String, String> commitFiles = commit.getBlobs();
         File currhead = Utils.join(_logs.toString(),
                 Utils.readContentsAsString(_head));
         Commit currCommit = Utils.readObject(currhead, Commit.class);
-        HashMap<String, Blob> trackedFiles = currCommit.getBlobs();
+        HashMap<String, String> trackedFiles = currCommit.getBlobs();
         String currBranch = Utils.readContentsAsString(_active);
         File branchHead = Utils.join(_gitfolder.toString(), currBranch);
         commit.addBranch(currBranch);
@@ -754,21 +759,20 @@ public class Main {
         }
         for (String file : commitFiles.keySet()) {
             File restore = new File(file);
+            String data = Blob.read(commitFiles.get(file)).getFiledata();
             if (restore.exists()) {
                 if (!trackedFiles.containsKey(file)
                         && !Utils.readContentsAsString(restore).
-                        equals(commitFiles.get(file).getFiledata())) {
+                        equals(data)) {
                     System.out.println("There is an untracked file in the way;"
                             + " delete it, or add and commit it first.");
                     System.exit(0);
                 }
-                Utils.writeContents(restore,
-                        commitFiles.get(file).getFiledata());
+                Utils.writeContents(restore, data);
             } else {
                 try {
                     restore.createNewFile();
-                    Utils.writeContents(restore,
-                            commitFiles.get(file).getFiledata());
+                    Utils.writeContents(restore, data);
                 } catch (IOException e) {
                     System.out.println("IOError reset.");
                 }
@@ -827,9 +831,9 @@ public class Main {
                 System.out.println("Current branch fast-forwarded.");
                 System.exit(0);
             }
-            HashMap<String, Blob> mapBranch = branchcommit.getBlobs();
-            HashMap<String, Blob> mapCurr = commit.getBlobs();
-            HashMap<String, Blob> mapSplit = lca.getBlobs();
+            HashMap<String, String> mapBranch = branchcommit.getBlobs();
+            HashMap<String, String> mapCurr = commit.getBlobs();
+            HashMap<String, String> mapSplit = lca.getBlobs();
             conflict = resolveMerge(mapBranch, mapCurr, mapSplit);
             stageCheck();
             commit = Utils.readObject(_current, Commit.class);
@@ -889,56 +893,54 @@ public class Main {
      * @param splitPoint - map of split point.
      * @return true if detected merge conflict.
      */
-    private static boolean resolveMerge(HashMap<String, Blob> branchMap,
-                                        HashMap<String, Blob> currMap,
-                                        HashMap<String, Blob> splitPoint) {
+    private static boolean resolveMerge(HashMap<String, String> branchMap,
+                                        HashMap<String, String> currMap,
+                                        HashMap<String, String> splitPoint) {
         boolean conflicting = false;
         ArrayList<File> deletables = new ArrayList<>();
         for (String filename : splitPoint.keySet()) {
+            String split = splitPoint.get(filename);
             if (currMap.containsKey(filename)) {
+                String curr = currMap.get(filename);
                 if (branchMap.containsKey(filename)) {
-                    if (currMap.get(filename).isSame(splitPoint.get(filename))
-                            && !branchMap.get(filename).
-                            isSame(splitPoint.get(filename))) {
-                        restore(filename, branchMap.get(filename));
+                    String branch = branchMap.get(filename);
+                    if (curr.equals(split) && !branch.equals(split)) {
+                        restore(filename, Blob.read(branch));
                         staging.addFile(new File(filename));
-                    } else if (!currMap.get(filename).
-                            isSame(branchMap.get(filename))
-                            && !branchMap.get(filename).isSame(splitPoint.
-                            get(filename))) {
+                    } else if (!curr.equals(branch) && !branch.equals(split)) {
                         File conflicted = new File(filename);
-                        mergeDisplay(conflicted, currMap.get(filename),
-                                branchMap.get(filename));
+                        mergeDisplay(conflicted, Blob.read(curr),
+                                Blob.read(branch));
                         conflicting = true;
                         staging.addFile(conflicted);
                     }
-                } else if (currMap.get(filename).
-                        isSame(splitPoint.get(filename))) {
+                } else if (curr.equals(split)) {
                     staging.removefromAdded(filename);
                     File deleting = new File(filename);
                     deletables.add(deleting);
                 } else {
-                    currConflict(new File(filename), currMap.get(filename));
+                    currConflict(new File(filename), Blob.read(curr));
                     conflicting = true;
                 }
-            } else if (branchMap.containsKey(filename) && !branchMap.
-                    get(filename).isSame(splitPoint.get(filename))) {
-                absentConflict(new File(filename), branchMap.get(filename));
+            } else if (branchMap.containsKey(filename)
+                    && !branchMap.get(filename).equals(split)) {
+                absentConflict(new File(filename),
+                        Blob.read(branchMap.get(filename)));
                 conflicting = true;
             }
         }
         for (String filename : branchMap.keySet()) {
+            String branch = branchMap.get(filename);
             if (!currMap.containsKey(filename)
                     && !splitPoint.containsKey(filename)) {
-                checkDelete(new File(filename), branchMap.get(filename));
-                restore(filename, branchMap.get(filename));
+                checkDelete(new File(filename), Blob.read(branch));
+                restore(filename, Blob.read(branch));
                 staging.addFile(new File(filename));
             } else if (!splitPoint.containsKey(filename)
-                    && !currMap.get(filename).getFiledata().
-                    equals(branchMap.get(filename).getFiledata())) {
+                    && !currMap.get(filename).equals(branch)) {
                 File conflicted = new File(filename);
-                mergeDisplay(conflicted, currMap.get(filename),
-                        branchMap.get(filename));
+                mergeDisplay(conflicted, Blob.read(currMap.get(filename)),
+                        Blob.read(branch));
                 conflicting = true;
                 staging.addFile(conflicted);
             }
@@ -1152,6 +1154,7 @@ public class Main {
                         + "changes before pushing.");
                 System.exit(0);
             }
+            copyBlobs(pushingcommits, ".", location);
             getRemoteFiles(location);
             commit = Utils.readObject(Utils.join(_logs.toString(),
                     rmbranchhead), Commit.class);
@@ -1169,6 +1172,7 @@ public class Main {
             commit = Utils.readObject(Utils.join(_logs.toString(),
                     localhead), Commit.class);
             commit.getFullHistory(pushingcommits);
+            copyBlobs(pushingcommits, ".", location);
             getRemoteFiles(location);
             Commit remoteHead = Utils.readObject(Utils.join(_logs.toString(),
                     remotehead), Commit.class);
@@ -1180,6 +1184,22 @@ public class Main {
         }
     }
 
+    /** Copy the blobs tracked by the given commits between the
+     * object directories of two Gitlet directories.
+     * @param commits - commits being copied
+     * @param from - path of the directory they come from
+     * @param to - path of the directory they go to
+     */
+    private static void copyBlobs(Stack<Commit> commits, String from,
+                                  String to) {
+        HashSet<String> ids = new HashSet<>();
+        for (Commit com : commits) {
+            ids.addAll(com.getBlobs().values());
+        }
+        Blob.copy(ids, Utils.join(from, ".gitlet", "objects"),
+                Utils.join(to, ".gitlet", "objects"));
+    }
+
     /** Create the branch at the remote Gitlet.
      * @param branch - branch name
      * @param head - head commit
@@ -1249,6 +1269,7 @@ public class Main {
             rmCom.getFullHistory(newcommits);
         }
         reinitializeFiles();
+        copyBlobs(newcommits, location, ".");
         if (!localexistence) {
             String[] branchargs = {"branch", localbranch};
             initBranch(branchargs);
@@ -1379,6 +1400,9 @@ public class Main {
 
         _logs =
                 Utils.join(_gitfolder.toString(), "_logs");
+
+        _objects =
+                Utils.join(_gitfolder.toString(), "objects");
     }
 
     /** Reinitialize files to local.
@@ -1422,6 +1446,9 @@ public class Main {
         _logs =
                 Utils.join(_gitfolder.toString(), "_logs");
 
+        _objects =
+                Utils.join(_gitfolder.toString(), "objects");
+
 
     }
 
@@ -8,14 +8,16 @@ import java.util.HashSet;
 
 /** The staging area of Gitlet.
  * Contains information of all files that have been
- * added for committing, and removed.
+ * added for committing, and removed. Added files are
+ * held as the ids of their blobs, which are saved when
+ * the file is added.
  *
  * @author Dhruv Sirohi
  */
 public class Stage implements Serializable {
 
-    /** Map of files added for addition. */
-    private HashMap<String, Blob> filesAdded;
+    /** Map of files added for addition to their blob ids. */
+    private HashMap<String, String> filesAdded;
 
     /** Map of files added for removal. */
     private HashSet<String> filesRemoved;
@@ -40,7 +42,7 @@ public class Stage implements Serializable {
      */
     void addFile(File name) {
         Blob blob = new Blob(name);
-        filesAdded.put(name.toString(), blob);
+        filesAdded.put(name.toString(), blob.save());
     }
 
     /** Check if the stage contains this file.
@@ -94,7 +96,7 @@ public class Stage implements Serializable {
      *
      * @return HashMap
      */
-    HashMap<String, Blob> getAddedfiles() {
+    HashMap<String, String> getAddedfiles() {
         return filesAdded;
     }
 
@@ -102,7 +104,7 @@ public class Stage implements Serializable {
      *
      * @return HashMap
      */
-    HashMap<String, Blob> getRemovedfiles() {
+    HashMap<String, String> getRemovedfiles() {
         return filesAdded;
     }
     /** Return removed files.
@@ -125,16 +127,12 @@ public class Stage implements Serializable {
         return new ArrayList<String>(filesAdded.keySet());
     }
 
-    /** Return some files.
+    /** Return the ids of the added blobs.
      *
-     * @return blobs
+     * @return blob ids
      */
-    HashSet<Blob> getFiles() {
-        HashSet<Blob> names = new HashSet<>();
-        for (String f : filesAdded.keySet()) {
-            names.add(filesAdded.get(f));
-        }
-        return names;
+    HashSet<String> getFiles() {
+        return new HashSet<>(filesAdded.values());
     }
 
     /** Check is stage is empty.
@@ -149,7 +147,7 @@ public class Stage implements Serializable {
      *
      * @return map
      */
-    public HashMap<String, Blob> getFilemap() {
+    public HashMap<String, String> getFilemap() {
         return filesAdded;
     }
 